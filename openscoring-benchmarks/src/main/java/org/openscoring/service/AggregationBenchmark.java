@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openscoring.common.EvaluationRequest;
+
+/**
+ * Per-record latency of the {@link ModelResource#aggregateRequests(String, List)} method.
+ * Only models that declare a group field are applicable.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AggregationBenchmark {
+
+	@Param({"AssociationRulesShopping"})
+	public String id;
+
+	private String groupName = null;
+
+	private List<EvaluationRequest> requests = null;
+
+
+	@Setup
+	public void setup() throws Exception {
+		Model model = BenchmarkUtil.loadModel(this.id);
+
+		this.groupName = BenchmarkUtil.getGroupName(model);
+		if(this.groupName == null){
+			throw new IllegalArgumentException("Model " + this.id + " does not declare a group field");
+		}
+
+		this.requests = BenchmarkUtil.loadRequests(this.id, AggregationBenchmark.BATCH_SIZE);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(AggregationBenchmark.BATCH_SIZE)
+	public List<EvaluationRequest> aggregateRequests(){
+		return ModelResource.aggregateRequests(this.groupName, this.requests);
+	}
+
+	public static final int BATCH_SIZE = 100;
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openscoring.common.BatchEvaluationRequest;
+import org.openscoring.common.BatchEvaluationResponse;
+import org.openscoring.common.EvaluationRequest;
+import org.openscoring.common.TableEvaluationRequest;
+import org.openscoring.common.TableEvaluationResponse;
+
+/**
+ * Per-record latency of the batch and CSV evaluation endpoints, excluding (de)serialization.
+ *
+ * Every invocation evaluates a batch of {@link #BATCH_SIZE} records,
+ * which is reported as {@link #BATCH_SIZE} operations.
+ * Parallel evaluation splits the batch into partitions of {@link #PARTITION_SIZE} records.
+ * Sequential evaluation (parallelism 1) evaluates the whole batch on the benchmark thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchEvaluationBenchmark {
+
+	@Param({"DecisionTreeIris", "RandomForestIris", "LinearRegressionAuto", "GradientBoostingAuto", "AssociationRulesShopping"})
+	public String id;
+
+	@Param({"1", "4"})
+	public int parallelism;
+
+	private EvaluationExecutor evaluationExecutor = null;
+
+	private ModelResource modelResource = null;
+
+	private ModelRef modelRef = null;
+
+	private BatchEvaluationRequest batchRequest = null;
+
+	private TableEvaluationRequest tableRequest = null;
+
+
+	@Setup
+	public void setup() throws Exception {
+		Model model = BenchmarkUtil.loadModel(this.id);
+
+		ModelRegistry modelRegistry = new ModelRegistry();
+
+		this.modelRef = BenchmarkUtil.createModelRef(this.id);
+
+		modelRegistry.put(this.modelRef, model);
+
+		this.evaluationExecutor = new EvaluationExecutor(this.parallelism, BatchEvaluationBenchmark.PARTITION_SIZE);
+
+		this.modelResource = BenchmarkUtil.createModelResource(modelRegistry, this.evaluationExecutor);
+
+		List<EvaluationRequest> requests = BenchmarkUtil.loadRequests(this.id, BatchEvaluationBenchmark.BATCH_SIZE);
+
+		this.batchRequest = new BatchEvaluationRequest()
+			.setRequests(requests);
+
+		this.tableRequest = BenchmarkUtil.loadTable(this.id)
+			.setRequests(requests);
+	}
+
+	@TearDown
+	public void tearDown(){
+		this.evaluationExecutor.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BatchEvaluationBenchmark.BATCH_SIZE)
+	public BatchEvaluationResponse evaluateBatch(){
+		return this.modelResource.evaluateBatch(this.modelRef, this.batchRequest);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BatchEvaluationBenchmark.BATCH_SIZE)
+	public TableEvaluationResponse evaluateCsv(){
+		return this.modelResource.evaluateCsv(this.modelRef, this.tableRequest);
+	}
+
+	public static final int BATCH_SIZE = 100;
+
+	public static final int PARTITION_SIZE = 25;
+}
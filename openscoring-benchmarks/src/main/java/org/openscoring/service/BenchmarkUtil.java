@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.HasGroupFields;
+import org.jpmml.evaluator.InputField;
+import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import org.openscoring.common.EvaluationRequest;
+import org.openscoring.common.TableEvaluationRequest;
+import org.openscoring.common.TableFormat;
+import org.openscoring.service.providers.CsvUtil;
+import org.supercsv.prefs.CsvPreference;
+
+public class BenchmarkUtil {
+
+	private BenchmarkUtil(){
+	}
+
+	static
+	public ModelRef createModelRef(String id){
+		return new ModelRef(BenchmarkUtil.OWNER, id);
+	}
+
+	static
+	public Model loadModel(String id) throws Exception {
+		Openscoring openscoring = getOpenscoring();
+
+		LoadingModelEvaluatorBuilder modelEvaluatorBuilder = openscoring.getLoadingModelEvaluatorBuilder();
+
+		try(InputStream is = openPMML(id)){
+			Evaluator evaluator = modelEvaluatorBuilder.clone()
+				.load(is)
+				.build();
+
+			evaluator.verify();
+
+			return new Model(evaluator);
+		}
+	}
+
+	static
+	public ModelResource createModelResource(ModelRegistry modelRegistry, EvaluationExecutor evaluationExecutor){
+		Openscoring openscoring = getOpenscoring();
+
+		return new ModelResource(modelRegistry, openscoring.getModelStore(), openscoring.getModelLoader(), openscoring.getDeploymentExecutor(), openscoring.getModelWarmer(), evaluationExecutor, openscoring.getEvaluationTracer(), openscoring.getResultCache(), openscoring.getMetricRegistry(), openscoring.getModelRouter());
+	}
+
+	static
+	public TableEvaluationRequest loadTable(String id) throws IOException {
+
+		try(InputStream is = openCSV(id)){
+
+			try(BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"))){
+				TableEvaluationRequest tableRequest = CsvUtil.readTable(reader, CsvPreference.TAB_PREFERENCE);
+
+				TableFormat tableFormat = new TableFormat()
+					.setCharset("UTF-8")
+					.setDelimiterChar((char)CsvPreference.TAB_PREFERENCE.getDelimiterChar())
+					.setQuoteChar(CsvPreference.TAB_PREFERENCE.getQuoteChar());
+
+				tableRequest.setFormat(tableFormat);
+
+				return tableRequest;
+			}
+		}
+	}
+
+	/**
+	 * @return A list of exactly <code>size</code> evaluation requests, obtained by cycling over the records of the CSV document.
+	 */
+	static
+	public List<EvaluationRequest> loadRequests(String id, int size) throws IOException {
+		TableEvaluationRequest tableRequest = loadTable(id);
+
+		List<EvaluationRequest> requests = tableRequest.getRequests();
+
+		List<EvaluationRequest> result = new ArrayList<>(size);
+
+		for(int i = 0; i < size; i++){
+			result.add(requests.get(i % requests.size()));
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return A list of evaluation requests that can be evaluated one by one.
+	 * Models that declare a group field receive pre-aggregated requests.
+	 */
+	static
+	public List<EvaluationRequest> loadRecords(String id, Model model) throws IOException {
+		TableEvaluationRequest tableRequest = loadTable(id);
+
+		List<EvaluationRequest> requests = tableRequest.getRequests();
+
+		String groupName = getGroupName(model);
+		if(groupName != null){
+			requests = ModelResource.aggregateRequests(groupName, requests);
+		}
+
+		return requests;
+	}
+
+	static
+	public String getGroupName(Model model){
+		Evaluator evaluator = model.getEvaluator();
+
+		if(evaluator instanceof HasGroupFields){
+			HasGroupFields hasGroupFields = (HasGroupFields)evaluator;
+
+			List<InputField> groupFields = hasGroupFields.getGroupFields();
+			if(groupFields.size() == 1){
+				InputField groupField = groupFields.get(0);
+
+				return groupField.getName();
+			}
+		}
+
+		return null;
+	}
+
+	static
+	private InputStream openPMML(String id){
+		return BenchmarkUtil.class.getResourceAsStream("/pmml/" + id + ".pmml");
+	}
+
+	static
+	private InputStream openCSV(String id){
+		return BenchmarkUtil.class.getResourceAsStream("/csv/" + extractSuffix(id) + ".csv");
+	}
+
+	static
+	private String extractSuffix(String id){
+
+		for(int i = id.length() - 1; i > -1; i--){
+			char c = id.charAt(i);
+
+			if(Character.isUpperCase(c)){
+				return id.substring(i);
+			}
+		}
+
+		throw new IllegalArgumentException();
+	}
+
+	static
+	private synchronized Openscoring getOpenscoring(){
+
+		if(BenchmarkUtil.openscoring == null){
+			BenchmarkUtil.openscoring = new Openscoring();
+		}
+
+		return BenchmarkUtil.openscoring;
+	}
+
+	private static Openscoring openscoring = null;
+
+	private static final Principal OWNER = () -> "benchmark";
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openscoring.common.ColumnarEvaluationRequest;
+import org.openscoring.common.ColumnarEvaluationResponse;
+import org.openscoring.common.EvaluationRequest;
+
+/**
+ * Per-record latency of the columnar evaluation endpoint, excluding (de)serialization.
+ * Directly comparable with {@link BatchEvaluationBenchmark}.
+ *
+ * Models with group fields are not supported in columnar mode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColumnarEvaluationBenchmark {
+
+	@Param({"DecisionTreeIris", "RandomForestIris", "LinearRegressionAuto", "GradientBoostingAuto"})
+	public String id;
+
+	@Param({"1", "4"})
+	public int parallelism;
+
+	private EvaluationExecutor evaluationExecutor = null;
+
+	private ModelResource modelResource = null;
+
+	private ModelRef modelRef = null;
+
+	private ColumnarEvaluationRequest columnarRequest = null;
+
+
+	@Setup
+	public void setup() throws Exception {
+		Model model = BenchmarkUtil.loadModel(this.id);
+
+		ModelRegistry modelRegistry = new ModelRegistry();
+
+		this.modelRef = BenchmarkUtil.createModelRef(this.id);
+
+		modelRegistry.put(this.modelRef, model);
+
+		this.evaluationExecutor = new EvaluationExecutor(this.parallelism, BatchEvaluationBenchmark.PARTITION_SIZE);
+
+		this.modelResource = BenchmarkUtil.createModelResource(modelRegistry, this.evaluationExecutor);
+
+		List<EvaluationRequest> requests = BenchmarkUtil.loadRequests(this.id, BatchEvaluationBenchmark.BATCH_SIZE);
+
+		this.columnarRequest = ModelResource.toColumnarRequest(requests);
+	}
+
+	@TearDown
+	public void tearDown(){
+		this.evaluationExecutor.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BatchEvaluationBenchmark.BATCH_SIZE)
+	public ColumnarEvaluationResponse evaluateColumnar(){
+		return this.modelResource.evaluateColumnar(this.modelRef, this.columnarRequest);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openscoring.common.EvaluationRequest;
+import org.openscoring.common.EvaluationResponse;
+
+/**
+ * Per-record latency of the {@link ModelResource#evaluate(Model, EvaluationRequest)} method,
+ * which covers argument binding, model evaluation and result decoding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EvaluationBenchmark {
+
+	@Param({"DecisionTreeIris", "RandomForestIris", "LinearRegressionAuto", "GradientBoostingAuto", "AssociationRulesShopping"})
+	public String id;
+
+	private Model model = null;
+
+	private List<EvaluationRequest> requests = null;
+
+	private int index = 0;
+
+
+	@Setup
+	public void setup() throws Exception {
+		this.model = BenchmarkUtil.loadModel(this.id);
+		this.requests = BenchmarkUtil.loadRecords(this.id, this.model);
+	}
+
+	@Benchmark
+	public EvaluationResponse evaluate(){
+		EvaluationRequest request = this.requests.get(this.index);
+
+		this.index = (this.index + 1) % this.requests.size();
+
+		return ModelResource.evaluate(this.model, request);
+	}
+}
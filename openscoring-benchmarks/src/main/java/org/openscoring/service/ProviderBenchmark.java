@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openscoring.common.BatchEvaluationRequest;
+import org.openscoring.common.BatchEvaluationResponse;
+import org.openscoring.common.EvaluationRequest;
+import org.openscoring.common.TableEvaluationRequest;
+import org.openscoring.common.TableEvaluationResponse;
+import org.openscoring.common.TableFormat;
+import org.openscoring.common.providers.ObjectMapperProvider;
+import org.openscoring.service.providers.CsvUtil;
+import org.supercsv.prefs.CsvPreference;
+
+/**
+ * Per-record latency of the JSON and CSV (de)serialization of batch requests and responses.
+ *
+ * The JSON benchmarks exercise the typed {@link ObjectReader} and {@link ObjectWriter} instances that are cached by {@link ObjectMapperProvider}.
+ * The CSV benchmarks exercise the {@link CsvUtil} utility methods that back the JAX-RS CSV provider.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProviderBenchmark {
+
+	@Param({"DecisionTreeIris", "LinearRegressionAuto", "AssociationRulesShopping"})
+	public String id;
+
+	private ObjectReader jsonRequestReader = null;
+
+	private ObjectWriter jsonResponseWriter = null;
+
+	private byte[] jsonRequest = null;
+
+	private BatchEvaluationResponse batchResponse = null;
+
+	private byte[] csvRequest = null;
+
+	private CsvPreference format = null;
+
+	private TableEvaluationResponse tableResponse = null;
+
+
+	@Setup
+	public void setup() throws Exception {
+		Model model = BenchmarkUtil.loadModel(this.id);
+
+		ModelRegistry modelRegistry = new ModelRegistry();
+
+		ModelRef modelRef = BenchmarkUtil.createModelRef(this.id);
+
+		modelRegistry.put(modelRef, model);
+
+		ModelResource modelResource = BenchmarkUtil.createModelResource(modelRegistry, new EvaluationExecutor(1, BatchEvaluationBenchmark.PARTITION_SIZE));
+
+		ObjectMapperProvider objectMapperProvider = new ObjectMapperProvider();
+
+		this.jsonRequestReader = objectMapperProvider.getReader(BatchEvaluationRequest.class);
+		this.jsonResponseWriter = objectMapperProvider.getWriter(BatchEvaluationResponse.class);
+
+		List<EvaluationRequest> requests = BenchmarkUtil.loadRequests(this.id, ProviderBenchmark.BATCH_SIZE);
+
+		BatchEvaluationRequest batchRequest = new BatchEvaluationRequest()
+			.setRequests(requests);
+
+		this.jsonRequest = (objectMapperProvider.getWriter(BatchEvaluationRequest.class)).writeValueAsBytes(batchRequest);
+
+		this.batchResponse = modelResource.evaluateBatch(modelRef, batchRequest);
+
+		TableEvaluationRequest tableRequest = BenchmarkUtil.loadTable(this.id)
+			.setRequests(requests);
+
+		TableFormat tableFormat = tableRequest.getFormat();
+
+		this.format = CsvUtil.createFormat(tableFormat.getDelimiterChar(), tableFormat.getQuoteChar());
+
+		this.tableResponse = modelResource.evaluateCsv(modelRef, tableRequest);
+
+		// Re-create the CSV document, because the test resources contain fewer records than the batch size
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		try(BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"))){
+			List<String> columns = tableRequest.getColumns();
+
+			writer.write(String.join("\t", columns));
+			writer.write('\n');
+
+			String idColumn = tableRequest.getIdColumn();
+
+			for(EvaluationRequest request : requests){
+				StringBuilder sb = new StringBuilder();
+
+				for(String column : columns){
+
+					if(sb.length() > 0){
+						sb.append('\t');
+					}
+
+					Object value = (column.equals(idColumn) ? request.getId() : (request.getArguments()).get(column));
+
+					sb.append(value != null ? value : "");
+				}
+
+				writer.write(sb.toString());
+				writer.write('\n');
+			}
+		}
+
+		this.csvRequest = os.toByteArray();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ProviderBenchmark.BATCH_SIZE)
+	public BatchEvaluationRequest readJson() throws IOException {
+		return this.jsonRequestReader.readValue(this.jsonRequest);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ProviderBenchmark.BATCH_SIZE)
+	public byte[] writeJson() throws IOException {
+		return this.jsonResponseWriter.writeValueAsBytes(this.batchResponse);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ProviderBenchmark.BATCH_SIZE)
+	public TableEvaluationRequest readCsv() throws IOException {
+
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(this.csvRequest), "UTF-8"))){
+			return CsvUtil.readTable(reader, this.format);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ProviderBenchmark.BATCH_SIZE)
+	public void writeCsv() throws IOException {
+
+		try(BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(OutputStream.nullOutputStream(), "UTF-8"))){
+			CsvUtil.writeTable(this.tableResponse, writer, this.format);
+		}
+	}
+
+	public static final int BATCH_SIZE = 100;
+}
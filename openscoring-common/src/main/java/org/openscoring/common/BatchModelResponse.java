@@ -30,6 +30,8 @@ public class BatchModelResponse extends SimpleResponse implements BatchResponse<
 
 	private List<ModelResponse> responses = null;
 
+	private Long heapSize = null;
+
 
 	public BatchModelResponse(){
 	}
@@ -37,7 +39,8 @@ public class BatchModelResponse extends SimpleResponse implements BatchResponse<
 	@Override
 	protected ToStringHelper toStringHelper(){
 		return super.toStringHelper()
-			.add("responses", getResponses());
+			.add("responses", getResponses())
+			.add("heapSize", getHeapSize());
 	}
 
 	@Override
@@ -50,4 +53,17 @@ public class BatchModelResponse extends SimpleResponse implements BatchResponse<
 
 		return this;
 	}
+
+	/**
+	 * @return The estimated combined heap size of all models, in bytes.
+	 */
+	public Long getHeapSize(){
+		return this.heapSize;
+	}
+
+	public BatchModelResponse setHeapSize(Long heapSize){
+		this.heapSize = heapSize;
+
+		return this;
+	}
 }
\ No newline at end of file
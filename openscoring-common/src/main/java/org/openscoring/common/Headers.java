@@ -21,4 +21,6 @@ package org.openscoring.common;
 public interface Headers {
 
 	String APPLICATION = "X-Application";
+
+	String MODEL_VERSION = "X-Model-Version";
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.common;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.jpmml.model.ToStringHelper;
+
+@JsonInclude (
+	value = JsonInclude.Include.NON_EMPTY
+)
+public class RouteRequest extends SimpleRequest {
+
+	private Map<String, Double> weights = null;
+
+	private String shadow = null;
+
+	private Double shadowRate = null;
+
+
+	public RouteRequest(){
+	}
+
+	@Override
+	protected ToStringHelper toStringHelper(){
+		return super.toStringHelper()
+			.add("weights", getWeights())
+			.add("shadow", getShadow())
+			.add("shadowRate", getShadowRate());
+	}
+
+	/**
+	 * @return Model identifiers mapped to their traffic weights.
+	 */
+	public Map<String, Double> getWeights(){
+		return this.weights;
+	}
+
+	public RouteRequest setWeights(Map<String, Double> weights){
+		this.weights = weights;
+
+		return this;
+	}
+
+	/**
+	 * @return The identifier of the model that scores sampled traffic in the background, or <code>null</code>.
+	 */
+	public String getShadow(){
+		return this.shadow;
+	}
+
+	public RouteRequest setShadow(String shadow){
+		this.shadow = shadow;
+
+		return this;
+	}
+
+	public Double getShadowRate(){
+		return this.shadowRate;
+	}
+
+	public RouteRequest setShadowRate(Double shadowRate){
+		this.shadowRate = shadowRate;
+
+		return this;
+	}
+}
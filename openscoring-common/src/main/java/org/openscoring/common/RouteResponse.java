@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.common;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.jpmml.model.ToStringHelper;
+
+@JsonInclude (
+	value = JsonInclude.Include.NON_EMPTY
+)
+public class RouteResponse extends SimpleResponse {
+
+	private String id = null;
+
+	private Map<String, Double> weights = null;
+
+	private String shadow = null;
+
+	private Double shadowRate = null;
+
+	private Long shadowEvaluations = null;
+
+	private Long shadowDisagreements = null;
+
+
+	public RouteResponse(){
+	}
+
+	public RouteResponse(String id){
+		setId(id);
+	}
+
+	@Override
+	protected ToStringHelper toStringHelper(){
+		return super.toStringHelper()
+			.add("id", getId())
+			.add("weights", getWeights())
+			.add("shadow", getShadow())
+			.add("shadowRate", getShadowRate())
+			.add("shadowEvaluations", getShadowEvaluations())
+			.add("shadowDisagreements", getShadowDisagreements());
+	}
+
+	public String getId(){
+		return this.id;
+	}
+
+	public RouteResponse setId(String id){
+		this.id = id;
+
+		return this;
+	}
+
+	public Map<String, Double> getWeights(){
+		return this.weights;
+	}
+
+	public RouteResponse setWeights(Map<String, Double> weights){
+		this.weights = weights;
+
+		return this;
+	}
+
+	public String getShadow(){
+		return this.shadow;
+	}
+
+	public RouteResponse setShadow(String shadow){
+		this.shadow = shadow;
+
+		return this;
+	}
+
+	public Double getShadowRate(){
+		return this.shadowRate;
+	}
+
+	public RouteResponse setShadowRate(Double shadowRate){
+		this.shadowRate = shadowRate;
+
+		return this;
+	}
+
+	/**
+	 * @return The number of shadow evaluations.
+	 */
+	public Long getShadowEvaluations(){
+		return this.shadowEvaluations;
+	}
+
+	public RouteResponse setShadowEvaluations(Long shadowEvaluations){
+		this.shadowEvaluations = shadowEvaluations;
+
+		return this;
+	}
+
+	/**
+	 * @return The number of shadow evaluations whose target values differed from the served ones.
+	 */
+	public Long getShadowDisagreements(){
+		return this.shadowDisagreements;
+	}
+
+	public RouteResponse setShadowDisagreements(Long shadowDisagreements){
+		this.shadowDisagreements = shadowDisagreements;
+
+		return this;
+	}
+}
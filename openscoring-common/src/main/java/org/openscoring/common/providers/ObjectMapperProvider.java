@@ -18,31 +18,48 @@
  */
 package org.openscoring.common.providers;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.ws.rs.ext.ContextResolver;
 import jakarta.ws.rs.ext.Provider;
 import org.jpmml.model.jackson.PMMLModule;
+import org.openscoring.common.BatchEvaluationRequest;
+import org.openscoring.common.BatchEvaluationResponse;
+import org.openscoring.common.BatchModelResponse;
+import org.openscoring.common.ColumnarEvaluationRequest;
+import org.openscoring.common.ColumnarEvaluationResponse;
+import org.openscoring.common.DeploymentResponse;
+import org.openscoring.common.EvaluationRequest;
+import org.openscoring.common.EvaluationResponse;
+import org.openscoring.common.ModelResponse;
+import org.openscoring.common.SimpleResponse;
 
 @Provider
 public class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
 
 	private ObjectMapper objectMapper = null;
 
+	private ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+	private ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
 
 	public ObjectMapperProvider(){
-		ObjectMapper objectMapper = new ObjectMapper();
-		objectMapper.registerModule(new PMMLModule());
-		objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-		objectMapper.setVisibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.NONE);
-		objectMapper.setVisibility(PropertyAccessor.IS_GETTER, JsonAutoDetect.Visibility.NONE);
-		objectMapper.setVisibility(PropertyAccessor.SETTER, JsonAutoDetect.Visibility.NONE);
-		objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-		objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+		ObjectMapper objectMapper = configure(new ObjectMapper());
 
 		setObjectMapper(objectMapper);
+
+		for(Class<?> clazz : ObjectMapperProvider.DTO_CLASSES){
+			getReader(clazz);
+			getWriter(clazz);
+		}
 	}
 
 	@Override
@@ -50,6 +67,26 @@ public class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
 		return getObjectMapper();
 	}
 
+	/**
+	 * <p>
+	 * The Jackson JAX-RS providers keep their own per-type reader and writer configurations.
+	 * Cached typed readers and writers are meant for code that (de)serializes values directly, such as streaming endpoints.
+	 * Creating them pre-fetches the root deserializers and serializers into the caches of the shared object mapper.
+	 * </p>
+	 *
+	 * @return A typed reader, which is created once per class.
+	 */
+	public ObjectReader getReader(Class<?> clazz){
+		return this.readers.computeIfAbsent(clazz, key -> getObjectMapper().readerFor(key));
+	}
+
+	/**
+	 * @return A typed writer, which is created once per class.
+	 */
+	public ObjectWriter getWriter(Class<?> clazz){
+		return this.writers.computeIfAbsent(clazz, key -> getObjectMapper().writerFor(key));
+	}
+
 	public ObjectMapper getObjectMapper(){
 		return this.objectMapper;
 	}
@@ -57,4 +94,38 @@ public class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
 	private void setObjectMapper(ObjectMapper objectMapper){
 		this.objectMapper = objectMapper;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * <p>
+	 * Applies Openscoring data binding settings to an object mapper.
+	 * </p>
+	 *
+	 * <p>
+	 * Binary data format mappers (eg. CBOR, Smile) must be configured the same way as the JSON mapper.
+	 * </p>
+	 */
+	static
+	public <M extends ObjectMapper> M configure(M objectMapper){
+		objectMapper.registerModule(new PMMLModule());
+		objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+		objectMapper.setVisibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.NONE);
+		objectMapper.setVisibility(PropertyAccessor.IS_GETTER, JsonAutoDetect.Visibility.NONE);
+		objectMapper.setVisibility(PropertyAccessor.SETTER, JsonAutoDetect.Visibility.NONE);
+		objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+		return objectMapper;
+	}
+
+	private static final Class<?>[] DTO_CLASSES = {
+		EvaluationRequest.class,
+		BatchEvaluationRequest.class,
+		ColumnarEvaluationRequest.class,
+		SimpleResponse.class,
+		ModelResponse.class,
+		BatchModelResponse.class,
+		EvaluationResponse.class,
+		BatchEvaluationResponse.class,
+		ColumnarEvaluationResponse.class,
+		DeploymentResponse.class
+	};
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.dmg.pmml.OpType;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.FieldValue;
+import org.jpmml.evaluator.InputField;
+import org.openscoring.common.ColumnarEvaluationRequest;
+import org.openscoring.common.EvaluationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A compiled argument binding plan for an {@link Evaluator}.
+ * </p>
+ *
+ * <p>
+ * The input fields of the evaluator are resolved and indexed once, at model deployment time.
+ * Binding an evaluation request allocates a single {@link FieldValue} array,
+ * which is exposed to the evaluator as a read-only map view.
+ * </p>
+ *
+ * <p>
+ * Evaluation requests carry their arguments as a map, so they are bound by name, with one map lookup per input field.
+ * Columnar evaluation requests are bound by position: columns are resolved by name once per request,
+ * and every row is then bound without any map lookups.
+ * </p>
+ *
+ * <p>
+ * Optionally, the prepared values of categorical and ordinal input fields are cached by raw value,
+ * so that frequently recurring raw values are parsed and validated only once.
+ * </p>
+ */
+public class ArgumentBinder {
+
+	private InputField[] inputFields = null;
+
+	private String[] names = null;
+
+	private Map<String, Integer> indices = null;
+
+	private Cache<Object, FieldValue>[] valueCaches = null;
+
+	private long valueCacheSize = 0L;
+
+
+	public ArgumentBinder(Evaluator evaluator){
+		this(evaluator, 0L);
+	}
+
+	/**
+	 * @param valueCacheSize The maximum number of cached prepared values per categorical or ordinal input field.
+	 * The value 0 means that prepared values are not cached.
+	 */
+	public ArgumentBinder(Evaluator evaluator, long valueCacheSize){
+		this(evaluator.getInputFields(), valueCacheSize);
+	}
+
+	public ArgumentBinder(List<InputField> inputFields){
+		this(inputFields, 0L);
+	}
+
+	@SuppressWarnings("unchecked")
+	public ArgumentBinder(List<InputField> inputFields, long valueCacheSize){
+		this.inputFields = inputFields.toArray(new InputField[inputFields.size()]);
+		this.names = new String[this.inputFields.length];
+		this.indices = new HashMap<>(2 * this.inputFields.length);
+
+		if(valueCacheSize < 0L){
+			throw new IllegalArgumentException("Value cache size must be non-negative");
+		} // End if
+
+		if(valueCacheSize > 0L){
+			this.valueCaches = new Cache[this.inputFields.length];
+		}
+
+		this.valueCacheSize = valueCacheSize;
+
+		for(int i = 0; i < this.inputFields.length; i++){
+			InputField inputField = this.inputFields[i];
+
+			String name = inputField.getName();
+
+			this.names[i] = name;
+			this.indices.put(name, i);
+
+			if(this.valueCaches != null && isCacheable(inputField)){
+				this.valueCaches[i] = CacheBuilder.newBuilder()
+					.maximumSize(valueCacheSize)
+					.recordStats()
+					.build();
+			}
+		}
+	}
+
+	public int size(){
+		return this.inputFields.length;
+	}
+
+	/**
+	 * @return A new binder for the same input fields, with empty value caches.
+	 */
+	public ArgumentBinder copy(){
+		return new ArgumentBinder(Arrays.asList(this.inputFields), this.valueCacheSize);
+	}
+
+	public ArgumentMap bind(EvaluationRequest request){
+		Map<String, ?> requestArguments = request.getArguments();
+
+		FieldValue[] values = new FieldValue[this.inputFields.length];
+
+		for(int i = 0; i < this.inputFields.length; i++){
+			String name = this.names[i];
+
+			Object value = requestArguments.get(name);
+			if(value == null && !requestArguments.containsKey(name)){
+				logger.warn("Evaluation request {} does not specify an input field {}", request.getId(), name);
+			}
+
+			values[i] = prepare(i, value);
+		}
+
+		return new ArgumentMap(values);
+	}
+
+	/**
+	 * <p>
+	 * Resolves the columns of a columnar evaluation request to input fields.
+	 * </p>
+	 *
+	 * @return Column values, in input field order.
+	 * Missing columns are represented by <code>null</code> elements.
+	 */
+	public List<?>[] selectColumns(ColumnarEvaluationRequest request){
+		Map<String, List<?>> requestColumns = request.getColumns();
+
+		List<?>[] columns = new List<?>[this.inputFields.length];
+
+		for(int i = 0; i < this.inputFields.length; i++){
+			String name = this.names[i];
+
+			List<?> column = (requestColumns != null ? requestColumns.get(name) : null);
+			if(column == null){
+				logger.warn("Columnar evaluation request {} does not specify an input field {}", request.getId(), name);
+			}
+
+			columns[i] = column;
+		}
+
+		return columns;
+	}
+
+	/**
+	 * @param columns Column values, as returned by {@link #selectColumns(ColumnarEvaluationRequest)}.
+	 */
+	public ArgumentMap bind(List<?>[] columns, int row){
+		FieldValue[] values = new FieldValue[this.inputFields.length];
+
+		for(int i = 0; i < this.inputFields.length; i++){
+			List<?> column = columns[i];
+
+			Object value = (column != null ? column.get(row) : null);
+
+			values[i] = prepare(i, value);
+		}
+
+		return new ArgumentMap(values);
+	}
+
+	/**
+	 * @return Aggregated statistics of all value caches, or <code>null</code> if prepared values are not cached.
+	 */
+	public CacheStats getValueCacheStats(){
+
+		if(this.valueCaches == null){
+			return null;
+		}
+
+		CacheStats result = new CacheStats(0L, 0L, 0L, 0L, 0L, 0L);
+
+		for(Cache<Object, FieldValue> valueCache : this.valueCaches){
+
+			if(valueCache != null){
+				result = result.plus(valueCache.stats());
+			}
+		}
+
+		return result;
+	}
+
+	private FieldValue prepare(int index, Object value){
+		InputField inputField = this.inputFields[index];
+		Cache<Object, FieldValue> valueCache = (this.valueCaches != null ? this.valueCaches[index] : null);
+
+		// Missing values are cheap to prepare, and cannot be used as cache keys
+		if(valueCache == null || value == null){
+			return inputField.prepare(value);
+		}
+
+		FieldValue result = valueCache.getIfPresent(value);
+		if(result == null){
+			// Invalid values raise an exception, and are therefore never cached
+			result = inputField.prepare(value);
+
+			if(result != null){
+				valueCache.put(value, result);
+			}
+		}
+
+		return result;
+	}
+
+	public class ArgumentMap extends AbstractMap<String, FieldValue> {
+
+		private FieldValue[] values = null;
+
+
+		private ArgumentMap(FieldValue[] values){
+			this.values = values;
+		}
+
+		@Override
+		public int size(){
+			return this.values.length;
+		}
+
+		@Override
+		public boolean containsKey(Object key){
+			return ArgumentBinder.this.indices.containsKey(key);
+		}
+
+		@Override
+		public FieldValue get(Object key){
+			Integer index = ArgumentBinder.this.indices.get(key);
+
+			if(index != null){
+				return this.values[index];
+			}
+
+			return null;
+		}
+
+		@Override
+		public Set<Map.Entry<String, FieldValue>> entrySet(){
+			return new AbstractSet<Map.Entry<String, FieldValue>>(){
+
+				@Override
+				public int size(){
+					return ArgumentMap.this.size();
+				}
+
+				@Override
+				public Iterator<Map.Entry<String, FieldValue>> iterator(){
+					return new Iterator<Map.Entry<String, FieldValue>>(){
+
+						private int index = 0;
+
+
+						@Override
+						public boolean hasNext(){
+							return this.index < ArgumentMap.this.values.length;
+						}
+
+						@Override
+						public Map.Entry<String, FieldValue> next(){
+
+							if(!hasNext()){
+								throw new NoSuchElementException();
+							}
+
+							Map.Entry<String, FieldValue> entry = new AbstractMap.SimpleImmutableEntry<>(ArgumentBinder.this.names[this.index], ArgumentMap.this.values[this.index]);
+
+							this.index++;
+
+							return entry;
+						}
+					};
+				}
+			};
+		}
+
+		/**
+		 * @return Prepared argument values, in input field order.
+		 */
+		public FieldValue[] getValues(){
+			return this.values;
+		}
+	}
+
+	static
+	private boolean isCacheable(InputField inputField){
+		OpType opType = inputField.getOpType();
+
+		switch(opType){
+			case CATEGORICAL:
+			case ORDINAL:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(ArgumentBinder.class);
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openscoring.common.DeploymentResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Model deployment executor.
+ * </p>
+ *
+ * <p>
+ * PMML documents are loaded using a dedicated, size-bounded thread pool,
+ * so that the number of concurrently loaded (and thus fully resident) PMML documents is limited.
+ * When all threads are busy, and the queue is full, new loading tasks are rejected rather than queued.
+ * </p>
+ *
+ * <p>
+ * The status of a finished deployment task is retained for a limited time only.
+ * </p>
+ */
+public class DeploymentExecutor {
+
+	private ThreadPoolExecutor executor = null;
+
+	private ConcurrentMap<ModelRef, Deployment> deployments = new ConcurrentHashMap<>();
+
+	private long retentionNanos = 0L;
+
+
+	/**
+	 * @param parallelism The number of loader threads. The value 0 means the number of available processors.
+	 * @param queueCapacity The maximum number of loading tasks that are waiting for a loader thread.
+	 * @param retention The time that the status of a finished deployment task remains available.
+	 */
+	public DeploymentExecutor(int parallelism, int queueCapacity, Duration retention){
+
+		if(parallelism < 0){
+			throw new IllegalArgumentException("Parallelism must be non-negative");
+		} else
+
+		if(parallelism == 0){
+			parallelism = Runtime.getRuntime().availableProcessors();
+		} // End if
+
+		if(queueCapacity < 0){
+			throw new IllegalArgumentException("Queue capacity must be non-negative");
+		} // End if
+
+		if(retention.isNegative()){
+			throw new IllegalArgumentException("Retention must be non-negative");
+		}
+
+		BlockingQueue<Runnable> queue = (queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>());
+
+		ThreadFactory threadFactory = new ThreadFactory(){
+
+			private AtomicInteger count = new AtomicInteger();
+
+
+			@Override
+			public Thread newThread(Runnable runnable){
+				Thread thread = new Thread(runnable, "openscoring-loader-" + this.count.incrementAndGet());
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		};
+
+		this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS, queue, threadFactory);
+
+		this.retentionNanos = retention.toNanos();
+	}
+
+	/**
+	 * <p>
+	 * Checks if a new loading task would be rejected.
+	 * The answer is advisory, because other threads may submit or complete loading tasks concurrently.
+	 * </p>
+	 */
+	public boolean isSaturated(){
+		ThreadPoolExecutor executor = this.executor;
+
+		BlockingQueue<Runnable> queue = executor.getQueue();
+
+		return (executor.getActiveCount() >= executor.getMaximumPoolSize()) && (queue.remainingCapacity() == 0);
+	}
+
+	/**
+	 * <p>
+	 * Executes a loading task on a loader thread, and waits for its completion.
+	 * </p>
+	 *
+	 * @throws RejectedExecutionException If the executor is saturated.
+	 */
+	public <V> V execute(Callable<V> callable) throws Exception {
+		Future<V> future = this.executor.submit(callable);
+
+		try {
+			return future.get();
+		} catch(ExecutionException ee){
+			Throwable cause = ee.getCause();
+
+			if(cause instanceof Exception){
+				throw (Exception)cause;
+			}
+
+			throw ee;
+		} catch(InterruptedException ie){
+			future.cancel(true);
+
+			Thread.currentThread().interrupt();
+
+			throw ie;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Submits a deployment task for asynchronous execution.
+	 * The status of the most recently submitted deployment task is available via {@link #getDeployment(ModelRef)}.
+	 * </p>
+	 *
+	 * @throws RejectedExecutionException If the executor is saturated.
+	 */
+	public Deployment submit(ModelRef modelRef, Callable<?> callable){
+		Deployment deployment = new Deployment();
+
+		Runnable runnable = () -> {
+			deployment.setStatus(DeploymentResponse.Status.RUNNING);
+
+			try {
+				callable.call();
+
+				deployment.setStatus(DeploymentResponse.Status.SUCCEEDED);
+			} catch(Exception e){
+				logger.error("Failed to deploy model " + modelRef.getId(), e);
+
+				deployment.setMessage(e.toString());
+				deployment.setStatus(DeploymentResponse.Status.FAILED);
+			}
+		};
+
+		expireDeployments();
+
+		this.deployments.put(modelRef, deployment);
+
+		try {
+			this.executor.execute(runnable);
+		} catch(RejectedExecutionException ree){
+			this.deployments.remove(modelRef, deployment);
+
+			throw ree;
+		}
+
+		return deployment;
+	}
+
+	public Deployment getDeployment(ModelRef modelRef){
+		expireDeployments();
+
+		return this.deployments.get(modelRef);
+	}
+
+	private void expireDeployments(){
+		long now = System.nanoTime();
+
+		Collection<Map.Entry<ModelRef, Deployment>> entries = this.deployments.entrySet();
+
+		entries.removeIf(entry -> entry.getValue().isExpired(now, this.retentionNanos));
+	}
+
+	public void shutdown(){
+		this.executor.shutdownNow();
+	}
+
+	static
+	public class Deployment {
+
+		private volatile DeploymentResponse.Status status = DeploymentResponse.Status.PENDING;
+
+		private volatile String message = null;
+
+		private volatile long updateNanos = 0L;
+
+
+		private Deployment(){
+		}
+
+		private boolean isExpired(long now, long retentionNanos){
+			DeploymentResponse.Status status = getStatus();
+
+			switch(status){
+				case SUCCEEDED:
+				case FAILED:
+					return (now - this.updateNanos) >= retentionNanos;
+				default:
+					return false;
+			}
+		}
+
+		public DeploymentResponse.Status getStatus(){
+			return this.status;
+		}
+
+		private void setStatus(DeploymentResponse.Status status){
+			this.updateNanos = System.nanoTime();
+			this.status = status;
+		}
+
+		public String getMessage(){
+			return this.message;
+		}
+
+		private void setMessage(String message){
+			this.message = message;
+		}
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(DeploymentExecutor.class);
+}
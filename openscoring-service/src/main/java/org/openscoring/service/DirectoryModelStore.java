@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.xml.transform.stream.StreamResult;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.MoreFiles;
+import com.typesafe.config.Config;
+import jakarta.xml.bind.JAXBException;
+import org.dmg.pmml.PMML;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.HasModel;
+import org.jpmml.model.JAXBSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A model store that keeps models in a local filesystem directory.
+ * </p>
+ *
+ * <p>
+ * Every model is represented by a PMML file and a JSON descriptor file, which are located in a per-owner subdirectory.
+ * The name of the subdirectory is the Base32 encoding of the owner name, so that it cannot escape the store directory, or collide with the subdirectory of the anonymous owner.
+ * The PMML file has a unique name.
+ * The descriptor file is written last, and refers to the PMML file by name and checksum.
+ * Both files are written to temporary files first, and then moved into place,
+ * so that a crash leaves either the old or the new version of the model in place, but never a mix of both.
+ * </p>
+ */
+public class DirectoryModelStore extends ModelStore {
+
+	private Path directory = null;
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+
+
+	public DirectoryModelStore(Config config){
+		super(config);
+
+		Config modelStoreConfig = config.getConfig("modelStore");
+
+		String directory = modelStoreConfig.getString("directory");
+		if(directory.isEmpty()){
+			throw new IllegalArgumentException("Model store directory is not specified");
+		}
+
+		this.directory = (Paths.get(directory).toAbsolutePath()).normalize();
+
+		try {
+			Files.createDirectories(this.directory);
+		} catch(IOException ioe){
+			throw new IllegalArgumentException(ioe);
+		}
+
+		logger.info("Model store directory: {}", (this.directory).toAbsolutePath());
+	}
+
+	@Override
+	public List<Entry> list() throws IOException {
+		List<Entry> result = new ArrayList<>();
+
+		try(DirectoryStream<Path> ownerDirectories = Files.newDirectoryStream(this.directory, Files::isDirectory)){
+
+			for(Path ownerDirectory : ownerDirectories){
+				String owner;
+
+				try {
+					owner = decodeOwner(ownerDirectory.getFileName().toString());
+				} catch(IllegalArgumentException iae){
+					logger.warn("Ignoring unknown directory {}", ownerDirectory);
+
+					continue;
+				}
+
+				Set<String> pmmlFileNames = new HashSet<>();
+
+				boolean complete = true;
+
+				try(DirectoryStream<Path> descriptorFiles = Files.newDirectoryStream(ownerDirectory, "*" + DirectoryModelStore.DESCRIPTOR_SUFFIX)){
+
+					for(Path descriptorFile : descriptorFiles){
+						String fileName = descriptorFile.getFileName().toString();
+
+						String id = fileName.substring(0, fileName.length() - DirectoryModelStore.DESCRIPTOR_SUFFIX.length());
+
+						Descriptor descriptor;
+
+						try(InputStream is = Files.newInputStream(descriptorFile)){
+							descriptor = this.objectMapper.readValue(is, Descriptor.class);
+						} catch(IOException ioe){
+							logger.error("Failed to read the model descriptor file " + descriptorFile, ioe);
+
+							complete = false;
+
+							continue;
+						}
+
+						pmmlFileNames.add(descriptor.file);
+
+						// Descriptor files that were written by an earlier version do not have a checksum
+						if(descriptor.checksum == null){
+
+							try {
+								descriptor.checksum = (MoreFiles.asByteSource(ownerDirectory.resolve(descriptor.file)).hash(Hashing.sha256())).toString();
+							} catch(IOException ioe){
+								logger.warn("Failed to compute the checksum of the PMML file " + descriptor.file, ioe);
+							}
+						}
+
+						result.add(createEntry(owner, id, ownerDirectory, descriptor));
+					}
+				}
+
+				if(!complete){
+					continue;
+				}
+
+				// Remove PMML files that were orphaned by an interrupted store or delete operation
+				try(DirectoryStream<Path> files = Files.newDirectoryStream(ownerDirectory)){
+
+					for(Path file : files){
+						String fileName = file.getFileName().toString();
+
+						if((fileName.endsWith(DirectoryModelStore.PMML_SUFFIX) && !pmmlFileNames.contains(fileName)) || fileName.endsWith(DirectoryModelStore.TEMPORARY_SUFFIX)){
+							logger.info("Deleting orphaned file {}", file);
+
+							Files.deleteIfExists(file);
+						}
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	synchronized
+	public Entry store(ModelRef modelRef, Model model) throws IOException {
+		Path ownerDirectory = getOwnerDirectory(modelRef);
+
+		Files.createDirectories(ownerDirectory);
+
+		String id = modelRef.getId();
+
+		Evaluator evaluator = model.getEvaluator();
+
+		HasModel<?> hasModel = (HasModel<?>)evaluator;
+
+		PMML pmml = hasModel.getPMML();
+
+		Descriptor descriptor = new Descriptor();
+		descriptor.file = id + "." + UUID.randomUUID() + DirectoryModelStore.PMML_SUFFIX;
+		// The requested model name (rather than the resolved one), so that the restored model reuses the same evaluator snapshot
+		descriptor.modelName = model.getModelName();
+		descriptor.properties = encodeProperties(model.getProperties());
+
+		Path pmmlFile = ownerDirectory.resolve(descriptor.file);
+
+		writeAtomically(pmmlFile, os -> {
+			HashingOutputStream hashingOs = new HashingOutputStream(Hashing.sha256(), os);
+
+			try {
+				JAXBSerializer serializer = new JAXBSerializer();
+
+				serializer.marshal(pmml, new StreamResult(hashingOs));
+			} catch(JAXBException je){
+				throw new IOException(je);
+			}
+
+			hashingOs.flush();
+
+			descriptor.checksum = (hashingOs.hash()).toString();
+		});
+
+		Path descriptorFile = ownerDirectory.resolve(id + DirectoryModelStore.DESCRIPTOR_SUFFIX);
+
+		String oldFile = readFile(descriptorFile);
+
+		writeAtomically(descriptorFile, os -> this.objectMapper.writeValue(os, descriptor));
+
+		if(oldFile != null){
+			Files.deleteIfExists(ownerDirectory.resolve(oldFile));
+		}
+
+		return createEntry((modelRef.getOwner()).getName(), id, ownerDirectory, descriptor);
+	}
+
+	@Override
+	synchronized
+	public void delete(ModelRef modelRef) throws IOException {
+		Path ownerDirectory = getOwnerDirectory(modelRef);
+
+		Path descriptorFile = ownerDirectory.resolve(modelRef.getId() + DirectoryModelStore.DESCRIPTOR_SUFFIX);
+
+		String oldFile = readFile(descriptorFile);
+
+		Files.deleteIfExists(descriptorFile);
+
+		if(oldFile != null){
+			Files.deleteIfExists(ownerDirectory.resolve(oldFile));
+		}
+	}
+
+	public Path getDirectory(){
+		return this.directory;
+	}
+
+	private Path getOwnerDirectory(ModelRef modelRef){
+		String owner = (modelRef.getOwner()).getName();
+
+		Path ownerDirectory = ((this.directory).resolve(encodeOwner(owner))).normalize();
+
+		if(!ownerDirectory.startsWith(this.directory) || ownerDirectory.equals(this.directory)){
+			throw new IllegalArgumentException("Owner directory " + ownerDirectory + " is not located inside the store directory");
+		}
+
+		return ownerDirectory;
+	}
+
+	private String readFile(Path descriptorFile){
+
+		if(!Files.exists(descriptorFile)){
+			return null;
+		}
+
+		try(InputStream is = Files.newInputStream(descriptorFile)){
+			Descriptor descriptor = this.objectMapper.readValue(is, Descriptor.class);
+
+			return descriptor.file;
+		} catch(IOException ioe){
+			logger.warn("Failed to read the model descriptor file " + descriptorFile, ioe);
+
+			return null;
+		}
+	}
+
+	static
+	private Entry createEntry(String owner, String id, Path ownerDirectory, Descriptor descriptor){
+		Path pmmlFile = ownerDirectory.resolve(descriptor.file);
+
+		Entry entry = new Entry(owner, id, descriptor.modelName, decodeProperties(descriptor.properties)){
+
+			@Override
+			public InputStream open() throws IOException {
+				return Files.newInputStream(pmmlFile);
+			}
+
+			@Override
+			public Path getFile(){
+				return pmmlFile;
+			}
+
+			@Override
+			public String getFileChecksum(){
+				return descriptor.checksum;
+			}
+		};
+
+		return entry;
+	}
+
+	static
+	private void writeAtomically(Path file, ContentWriter writer) throws IOException {
+		Path tmpFile = file.resolveSibling(file.getFileName() + DirectoryModelStore.TEMPORARY_SUFFIX);
+
+		try {
+			try(OutputStream os = Files.newOutputStream(tmpFile)){
+				writer.write(os);
+			}
+
+			try {
+				Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch(AtomicMoveNotSupportedException amnse){
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+	}
+
+	static
+	private Map<String, Object> encodeProperties(Map<String, Object> properties){
+		Map<String, Object> result = new LinkedHashMap<>();
+
+		for(String key : DirectoryModelStore.PERSISTENT_PROPERTIES){
+			Object value = properties.get(key);
+
+			if(value instanceof Date){
+				value = ((Date)value).getTime();
+			}
+
+			result.put(key, value);
+		}
+
+		return result;
+	}
+
+	static
+	private Map<String, Object> decodeProperties(Map<String, Object> properties){
+		Map<String, Object> result = new LinkedHashMap<>();
+
+		for(String key : DirectoryModelStore.PERSISTENT_PROPERTIES){
+			Object value = (properties != null ? properties.get(key) : null);
+
+			if((Model.PROPERTY_CREATED_TIMESTAMP).equals(key) && value instanceof Number){
+				value = new Date(((Number)value).longValue());
+			} else
+
+			if((Model.PROPERTY_FILE_SIZE).equals(key) && value instanceof Number){
+				value = ((Number)value).longValue();
+			}
+
+			result.put(key, value);
+		}
+
+		return result;
+	}
+
+	static
+	private String encodeOwner(String owner){
+
+		if(owner == null){
+			return DirectoryModelStore.ANONYMOUS_OWNER;
+		}
+
+		// The prefix keeps named owners apart from the anonymous owner, and from the "." and ".." special names
+		return DirectoryModelStore.OWNER_PREFIX + DirectoryModelStore.OWNER_ENCODING.encode(owner.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static
+	private String decodeOwner(String string){
+
+		if((DirectoryModelStore.ANONYMOUS_OWNER).equals(string)){
+			return null;
+		}
+
+		if(!string.startsWith(DirectoryModelStore.OWNER_PREFIX)){
+			throw new IllegalArgumentException(string);
+		}
+
+		byte[] bytes = DirectoryModelStore.OWNER_ENCODING.decode(string.substring(DirectoryModelStore.OWNER_PREFIX.length()));
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private interface ContentWriter {
+
+		void write(OutputStream os) throws IOException;
+	}
+
+	static
+	private class Descriptor {
+
+		public String file = null;
+
+		public String checksum = null;
+
+		public String modelName = null;
+
+		public Map<String, Object> properties = null;
+	}
+
+	private static final String ANONYMOUS_OWNER = "_";
+
+	private static final String OWNER_PREFIX = "u";
+
+	private static final BaseEncoding OWNER_ENCODING = BaseEncoding.base32Hex().lowerCase().omitPadding();
+
+	private static final String PMML_SUFFIX = ".pmml.xml";
+	private static final String DESCRIPTOR_SUFFIX = ".json";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	private static final String[] PERSISTENT_PROPERTIES = {
+		Model.PROPERTY_CREATED_TIMESTAMP,
+		Model.PROPERTY_FILE_SIZE,
+		Model.PROPERTY_FILE_CHECKSUM,
+		Model.PROPERTY_MODEL_VERSION
+	};
+
+	private static final Logger logger = LoggerFactory.getLogger(DirectoryModelStore.class);
+}
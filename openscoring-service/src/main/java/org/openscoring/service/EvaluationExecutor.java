@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.openscoring.common.EvaluationRequest;
+import org.openscoring.common.EvaluationResponse;
+
+/**
+ * <p>
+ * Batch evaluation executor.
+ * </p>
+ *
+ * <p>
+ * A batch that is larger than the partition size is split into partitions, which are evaluated in parallel using a dedicated fork-join pool.
+ * Without a pool (ie. parallelism 1), every batch is evaluated sequentially on the calling thread.
+ * Responses are returned in request order.
+ * </p>
+ */
+public class EvaluationExecutor {
+
+	private ForkJoinPool forkJoinPool = null;
+
+	private int partitionSize = 0;
+
+	private int chunkSize = 0;
+
+
+	public EvaluationExecutor(int parallelism, int partitionSize){
+		this(parallelism, partitionSize, 0);
+	}
+
+	/**
+	 * @param chunkSize The number of records that streaming endpoints read, evaluate and write at a time.
+	 * The value 0 means one record without a pool (ie. every record is written back as soon as it has been evaluated),
+	 * and the parallelism times the partition size with a pool.
+	 */
+	public EvaluationExecutor(int parallelism, int partitionSize, int chunkSize){
+
+		if(parallelism < 0){
+			throw new IllegalArgumentException("Parallelism must be non-negative");
+		} else
+
+		if(parallelism == 0){
+			parallelism = Runtime.getRuntime().availableProcessors();
+		} // End if
+
+		if(partitionSize < 1){
+			throw new IllegalArgumentException("Partition size must be positive");
+		} // End if
+
+		if(chunkSize < 0){
+			throw new IllegalArgumentException("Chunk size must be non-negative");
+		} // End if
+
+		if(parallelism > 1){
+			this.forkJoinPool = new ForkJoinPool(parallelism);
+		}
+
+		this.partitionSize = partitionSize;
+		if(chunkSize == 0){
+			// Chunking only pays off if the chunk can be evaluated in parallel
+			chunkSize = (this.forkJoinPool != null ? parallelism * partitionSize : 1);
+		}
+
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @param allOrNothing <code>true</code> if the first failure should cancel the evaluation of all remaining requests and be re-thrown,
+	 * <code>false</code> if the failure should be recorded as an error response.
+	 */
+	public List<EvaluationResponse> execute(List<EvaluationRequest> requests, Function<EvaluationRequest, EvaluationResponse> function, boolean allOrNothing) throws Exception {
+		BiFunction<EvaluationRequest, Exception, EvaluationResponse> errorFunction = null;
+
+		if(!allOrNothing){
+			errorFunction = (request, e) -> {
+				EvaluationResponse response = new EvaluationResponse(request.getId());
+				response.setMessage(e.toString());
+
+				return response;
+			};
+		}
+
+		return execute(requests, function, errorFunction);
+	}
+
+	/**
+	 * @param errorFunction A function that converts a failure to a result,
+	 * or <code>null</code> if the first failure should cancel the evaluation of all remaining elements and be re-thrown.
+	 */
+	public <E, R> List<R> execute(List<E> elements, Function<? super E, ? extends R> function, BiFunction<? super E, Exception, ? extends R> errorFunction) throws Exception {
+		Object[] elementArray = elements.toArray();
+		Object[] resultArray = new Object[elementArray.length];
+
+		AtomicReference<Exception> failure = new AtomicReference<>();
+
+		// Partitions are forked only into the dedicated pool, never into the common pool
+		if(this.forkJoinPool != null && elementArray.length > this.partitionSize){
+			PartitionAction<E, R> action = new PartitionAction<>(elementArray, resultArray, 0, elementArray.length, function, errorFunction, failure);
+
+			this.forkJoinPool.invoke(action);
+		} else
+
+		{
+			evaluate(elementArray, resultArray, 0, elementArray.length, function, errorFunction, failure);
+		}
+
+		Exception exception = failure.get();
+		if(exception != null){
+			throw exception;
+		}
+
+		@SuppressWarnings("unchecked")
+		List<R> result = (List<R>)Arrays.asList(resultArray);
+
+		return result;
+	}
+
+	public int getParallelism(){
+
+		if(this.forkJoinPool != null){
+			return this.forkJoinPool.getParallelism();
+		}
+
+		return 1;
+	}
+
+	public int getPartitionSize(){
+		return this.partitionSize;
+	}
+
+	public int getChunkSize(){
+		return this.chunkSize;
+	}
+
+	public void shutdown(){
+
+		if(this.forkJoinPool != null){
+			this.forkJoinPool.shutdown();
+		}
+	}
+
+	private class PartitionAction<E, R> extends RecursiveAction {
+
+		private Object[] elements = null;
+
+		private Object[] results = null;
+
+		private int begin = 0;
+
+		private int end = 0;
+
+		private Function<? super E, ? extends R> function = null;
+
+		private BiFunction<? super E, Exception, ? extends R> errorFunction = null;
+
+		private AtomicReference<Exception> failure = null;
+
+
+		private PartitionAction(Object[] elements, Object[] results, int begin, int end, Function<? super E, ? extends R> function, BiFunction<? super E, Exception, ? extends R> errorFunction, AtomicReference<Exception> failure){
+			this.elements = elements;
+			this.results = results;
+			this.begin = begin;
+			this.end = end;
+			this.function = function;
+			this.errorFunction = errorFunction;
+			this.failure = failure;
+		}
+
+		@Override
+		protected void compute(){
+
+			if((this.end - this.begin) > EvaluationExecutor.this.partitionSize){
+				int middle = (this.begin + this.end) >>> 1;
+
+				invokeAll(
+					new PartitionAction<>(this.elements, this.results, this.begin, middle, this.function, this.errorFunction, this.failure),
+					new PartitionAction<>(this.elements, this.results, middle, this.end, this.function, this.errorFunction, this.failure)
+				);
+
+				return;
+			}
+
+			evaluate(this.elements, this.results, this.begin, this.end, this.function, this.errorFunction, this.failure);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	static
+	private <E, R> void evaluate(Object[] elements, Object[] results, int begin, int end, Function<? super E, ? extends R> function, BiFunction<? super E, Exception, ? extends R> errorFunction, AtomicReference<Exception> failure){
+
+		for(int i = begin; i < end; i++){
+
+			// Another partition has already failed
+			if(errorFunction == null && failure.get() != null){
+				return;
+			}
+
+			E element = (E)elements[i];
+
+			R result;
+
+			try {
+				result = function.apply(element);
+			} catch(Exception e){
+
+				if(errorFunction == null){
+					failure.compareAndSet(null, e);
+
+					return;
+				}
+
+				result = errorFunction.apply(element, e);
+			}
+
+			results[i] = result;
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openscoring.common.EvaluationRequest;
+import org.openscoring.common.EvaluationResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Sampled and asynchronous evaluation trace channel.
+ * </p>
+ *
+ * <p>
+ * Sampled records are snapshotted on the request thread, and queued for a background thread,
+ * which writes them to this class' logger as single-line JSON objects.
+ * When the queue is full, records are dropped rather than blocking the request thread.
+ * </p>
+ *
+ * <p>
+ * Model-specific sampling rates are keyed either by the owner-qualified model identifier (eg. <code>alice/Test</code>),
+ * or by the plain model identifier (eg. <code>Test</code>), which applies to the models of all owners.
+ * </p>
+ */
+public class EvaluationTracer {
+
+	private double sampleRate = 0d;
+
+	private Map<String, Double> modelSampleRates = null;
+
+	private BlockingQueue<Map<String, Object>> queue = null;
+
+	private AtomicLong droppedCount = new AtomicLong();
+
+	private Thread thread = null;
+
+
+	public EvaluationTracer(double sampleRate, Map<String, Double> modelSampleRates, int queueCapacity){
+		this.sampleRate = checkSampleRate(sampleRate);
+		this.modelSampleRates = new LinkedHashMap<>(modelSampleRates);
+
+		Collection<Double> values = this.modelSampleRates.values();
+		for(Double value : values){
+			checkSampleRate(value);
+		}
+
+		boolean enabled = (sampleRate > 0d) || values.stream().anyMatch(value -> value > 0d);
+		if(enabled){
+			this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+			this.thread = new Thread(this::drain, "openscoring-tracer");
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+	}
+
+	public double getSampleRate(ModelRef modelRef){
+		Principal owner = modelRef.getOwner();
+
+		String name = owner.getName();
+		if(name != null){
+			Double modelSampleRate = this.modelSampleRates.get(name + "/" + modelRef.getId());
+
+			if(modelSampleRate != null){
+				return modelSampleRate;
+			}
+		}
+
+		Double modelSampleRate = this.modelSampleRates.get(modelRef.getId());
+		if(modelSampleRate != null){
+			return modelSampleRate;
+		}
+
+		return this.sampleRate;
+	}
+
+	/**
+	 * <p>
+	 * Stops the background thread, after it has written the records that are already queued.
+	 * </p>
+	 */
+	public void shutdown(){
+
+		if(this.thread != null){
+			this.thread.interrupt();
+		}
+	}
+
+	public void trace(ModelRef modelRef, List<EvaluationRequest> requests, List<EvaluationResponse> responses){
+
+		if(this.queue == null){
+			return;
+		}
+
+		double sampleRate = getSampleRate(modelRef);
+		if(sampleRate <= 0d){
+			return;
+		}
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		for(int i = 0; i < requests.size(); i++){
+
+			if(sampleRate < 1d && random.nextDouble() >= sampleRate){
+				continue;
+			}
+
+			Map<String, Object> record = createRecord(modelRef, requests.get(i), responses.get(i));
+
+			if(!this.queue.offer(record)){
+				this.droppedCount.incrementAndGet();
+			}
+		}
+	}
+
+	private void drain(){
+		ObjectMapper objectMapper = new ObjectMapper();
+
+		while(true){
+			Map<String, Object> record;
+
+			try {
+				record = this.queue.take();
+			} catch(InterruptedException ie){
+				break;
+			}
+
+			write(objectMapper, record);
+		}
+
+		Map<String, Object> record;
+
+		while((record = this.queue.poll()) != null){
+			write(objectMapper, record);
+		}
+	}
+
+	private void write(ObjectMapper objectMapper, Map<String, Object> record){
+		long droppedCount = this.droppedCount.getAndSet(0);
+		if(droppedCount > 0){
+			logger.warn("Dropped {} trace record(s)", droppedCount);
+		}
+
+		String string;
+
+		try {
+			string = objectMapper.writeValueAsString(record);
+		} catch(Exception e){
+			string = record.toString();
+		}
+
+		logger.info(string);
+	}
+
+	/**
+	 * The argument and result maps are copied,
+	 * because response results may be modified by message body writers after this method returns.
+	 */
+	static
+	private Map<String, Object> createRecord(ModelRef modelRef, EvaluationRequest request, EvaluationResponse response){
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("timestamp", Instant.now().toString());
+		result.put("owner", (modelRef.getOwner()).getName());
+		result.put("model", modelRef.getId());
+		result.put("id", request.getId());
+
+		Map<String, ?> arguments = request.getArguments();
+		if(arguments != null){
+			result.put("arguments", new LinkedHashMap<>(arguments));
+		}
+
+		Map<String, ?> results = response.getResults();
+		if(results != null){
+			result.put("results", new LinkedHashMap<>(results));
+		}
+
+		String message = response.getMessage();
+		if(message != null){
+			result.put("message", message);
+		}
+
+		return result;
+	}
+
+	static
+	private double checkSampleRate(double sampleRate){
+
+		if(sampleRate < 0d || sampleRate > 1d){
+			throw new IllegalArgumentException("Invalid sample rate: " + sampleRate);
+		}
+
+		return sampleRate;
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(EvaluationTracer.class);
+}
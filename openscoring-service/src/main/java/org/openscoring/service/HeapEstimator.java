@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Estimates the heap footprint of object graphs.
+ * </p>
+ *
+ * <p>
+ * The object graph is traversed reflectively, and the shallow size of every reachable object is estimated
+ * assuming a 64-bit JVM with compressed object pointers (12-byte object headers, 4-byte references, 8-byte alignment).
+ * JDK classes are not opened for reflection. Strings, arrays, collections and maps are measured using their public API,
+ * and other JDK objects are measured shallowly.
+ * Classes, class loaders, threads and enum constants are shared by the whole JVM, and are not counted.
+ * </p>
+ *
+ * <p>
+ * The estimate is the size of everything that is reachable, including objects that are shared with other object graphs
+ * (eg. interned strings, or an evaluator that is shared between models),
+ * unless such objects are excluded by passing them in as already visited.
+ * </p>
+ */
+public class HeapEstimator {
+
+	private HeapEstimator(){
+	}
+
+	/**
+	 * @return The estimated size in bytes.
+	 */
+	static
+	public long estimate(Object... roots){
+		return estimate(newIdentitySet(), roots);
+	}
+
+	/**
+	 * <p>
+	 * Estimates the size of the objects that are reachable from the roots, but are not contained in the visited set yet.
+	 * Newly reached objects are added to the visited set,
+	 * so that estimating several object graphs one after another using the same visited set counts every shared object only once.
+	 * </p>
+	 *
+	 * @param visited An identity-based set.
+	 *
+	 * @return The estimated size in bytes.
+	 *
+	 * @see #newIdentitySet()
+	 */
+	static
+	public long estimate(Set<Object> visited, Object... roots){
+		Deque<Object> queue = new ArrayDeque<>();
+
+		long result = 0L;
+
+		for(Object root : roots){
+			enqueue(root, visited, queue);
+		}
+
+		while(!queue.isEmpty()){
+			Object object = queue.pop();
+
+			result += measure(object, visited, queue);
+		}
+
+		return result;
+	}
+
+	static
+	public Set<Object> newIdentitySet(){
+		return Collections.newSetFromMap(new IdentityHashMap<>());
+	}
+
+	static
+	private long measure(Object object, Set<Object> visited, Deque<Object> queue){
+		Class<?> clazz = object.getClass();
+
+		if(object instanceof String){
+			String string = (String)object;
+
+			// Assumes compact Latin-1 strings
+			return LAYOUTS.get(clazz).size + align(ARRAY_HEADER_SIZE + string.length());
+		} else
+
+		if(clazz.isArray()){
+			return measureArray(object, visited, queue);
+		}
+
+		Layout layout = LAYOUTS.get(clazz);
+
+		long result = layout.size;
+
+		if(layout.opaque){
+
+			if(object instanceof Map){
+				Map<?, ?> map = (Map<?, ?>)object;
+
+				Collection<? extends Map.Entry<?, ?>> entries = map.entrySet();
+
+				result += align(ARRAY_HEADER_SIZE + REFERENCE_SIZE * 2L * entries.size()) + ENTRY_SIZE * entries.size();
+
+				try {
+					for(Map.Entry<?, ?> entry : entries){
+						enqueue(entry.getKey(), visited, queue);
+						enqueue(entry.getValue(), visited, queue);
+					}
+				} catch(ConcurrentModificationException cme){
+					// Ignored
+				}
+			} else
+
+			if(object instanceof Collection){
+				Collection<?> collection = (Collection<?>)object;
+
+				result += align(ARRAY_HEADER_SIZE + REFERENCE_SIZE * (long)collection.size());
+
+				// Sets are backed by maps
+				if(object instanceof Set){
+					result += ENTRY_SIZE * collection.size();
+				}
+
+				try {
+					for(Object element : collection){
+						enqueue(element, visited, queue);
+					}
+				} catch(ConcurrentModificationException cme){
+					// Ignored
+				}
+			}
+
+			return result;
+		}
+
+		for(Field field : layout.referenceFields){
+			Object value;
+
+			try {
+				value = field.get(object);
+			} catch(IllegalAccessException iae){
+				continue;
+			}
+
+			enqueue(value, visited, queue);
+		}
+
+		return result;
+	}
+
+	static
+	private long measureArray(Object array, Set<Object> visited, Deque<Object> queue){
+		Class<?> componentType = (array.getClass()).getComponentType();
+
+		int length = Array.getLength(array);
+
+		if(componentType.isPrimitive()){
+			return align(ARRAY_HEADER_SIZE + (long)getSize(componentType) * length);
+		}
+
+		long result = align(ARRAY_HEADER_SIZE + (long)REFERENCE_SIZE * length);
+
+		Object[] elements = (Object[])array;
+
+		for(Object element : elements){
+			enqueue(element, visited, queue);
+		}
+
+		return result;
+	}
+
+	static
+	private void enqueue(Object object, Set<Object> visited, Deque<Object> queue){
+
+		if(object == null || isShared(object)){
+			return;
+		} // End if
+
+		if(visited.add(object)){
+			queue.push(object);
+		}
+	}
+
+	static
+	private boolean isShared(Object object){
+		return (object instanceof Class) || (object instanceof ClassLoader) || (object instanceof Thread) || (object instanceof Enum);
+	}
+
+	static
+	private boolean isOpaque(Class<?> clazz){
+		String name = clazz.getName();
+
+		return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.") || name.startsWith("sun.") || name.startsWith("com.sun.");
+	}
+
+	static
+	private int getSize(Class<?> type){
+
+		if(type == long.class || type == double.class){
+			return 8;
+		} else
+
+		if(type == int.class || type == float.class){
+			return 4;
+		} else
+
+		if(type == short.class || type == char.class){
+			return 2;
+		} else
+
+		if(type == byte.class || type == boolean.class){
+			return 1;
+		}
+
+		return REFERENCE_SIZE;
+	}
+
+	static
+	private long align(long size){
+		return (size + 7L) & ~7L;
+	}
+
+	static
+	private class Layout {
+
+		private long size = 0L;
+
+		private boolean opaque = false;
+
+		private Field[] referenceFields = null;
+
+
+		private Layout(Class<?> clazz){
+			this.opaque = isOpaque(clazz);
+
+			long size = OBJECT_HEADER_SIZE;
+
+			List<Field> referenceFields = new ArrayList<>();
+
+			for(Class<?> current = clazz; current != null; current = current.getSuperclass()){
+				boolean opaque = isOpaque(current);
+
+				Field[] fields = current.getDeclaredFields();
+				for(Field field : fields){
+
+					if(Modifier.isStatic(field.getModifiers())){
+						continue;
+					}
+
+					Class<?> type = field.getType();
+
+					size += getSize(type);
+
+					// JDK classes are not opened, so their fields (including inherited ones) are not followed
+					if(!type.isPrimitive() && !this.opaque && !opaque && field.trySetAccessible()){
+						referenceFields.add(field);
+					}
+				}
+			}
+
+			this.size = align(size);
+			this.referenceFields = referenceFields.toArray(new Field[referenceFields.size()]);
+		}
+	}
+
+	private static final ClassValue<Layout> LAYOUTS = new ClassValue<Layout>(){
+
+		@Override
+		protected Layout computeValue(Class<?> clazz){
+			return new Layout(clazz);
+		}
+	};
+
+	private static final int OBJECT_HEADER_SIZE = 12;
+	private static final int ARRAY_HEADER_SIZE = 16;
+	private static final int REFERENCE_SIZE = 4;
+
+	/**
+	 * The approximate size of a hash table entry object.
+	 */
+	private static final int ENTRY_SIZE = 32;
+}
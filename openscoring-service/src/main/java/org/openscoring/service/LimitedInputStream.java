@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>
+ * An input stream that fails when more than the specified number of bytes have been read.
+ * </p>
+ *
+ * <p>
+ * The failure may be wrapped into other exceptions (eg. by XML parsers), so it should be detected using {@link #isExceeded()}.
+ * </p>
+ */
+public class LimitedInputStream extends FilterInputStream {
+
+	private long limit = 0L;
+
+	private long count = 0L;
+
+	private boolean exceeded = false;
+
+
+	/**
+	 * @param limit The maximum number of bytes.
+	 */
+	public LimitedInputStream(InputStream is, long limit){
+		super(is);
+
+		if(limit < 0L){
+			throw new IllegalArgumentException("Limit must be non-negative");
+		}
+
+		this.limit = limit;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int result = super.read();
+
+		if(result != -1){
+			count(1L);
+		}
+
+		return result;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		int result = super.read(buffer, offset, length);
+
+		if(result != -1){
+			count(result);
+		}
+
+		return result;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long result = super.skip(n);
+
+		count(result);
+
+		return result;
+	}
+
+	@Override
+	public boolean markSupported(){
+		return false;
+	}
+
+	public long getCount(){
+		return this.count;
+	}
+
+	public boolean isExceeded(){
+		return this.exceeded;
+	}
+
+	private void count(long n) throws IOException {
+		this.count += n;
+
+		if(this.count > this.limit){
+			this.exceeded = true;
+
+			throw new IOException("The size of the stream exceeds " + this.limit + " bytes");
+		}
+	}
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * A registry of request metrics, which can be exported in the Prometheus text exposition format.
+ * </p>
+ *
+ * <p>
+ * Metrics are created on first use, and are updated without locking.
+ * Labels with a <code>null</code> value are omitted.
+ * </p>
+ *
+ * <p>
+ * Model labels are only given to deployed models, so that requests for arbitrary model identifiers cannot create new time series.
+ * The time series of a model are removed when the model is undeployed.
+ * </p>
+ */
+public class MetricRegistry {
+
+	private boolean enabled = false;
+
+	private boolean modelLabels = false;
+
+	private ModelRegistry modelRegistry = null;
+
+	private ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+
+	/**
+	 * @param modelRegistry The registry of deployed models. Required if model labels are enabled.
+	 */
+	public MetricRegistry(boolean enabled, boolean modelLabels, ModelRegistry modelRegistry){
+		this.enabled = enabled;
+		this.modelLabels = modelLabels;
+
+		if(modelLabels){
+			this.modelRegistry = Objects.requireNonNull(modelRegistry);
+		}
+	}
+
+	/**
+	 * @param modelRef The model, or <code>null</code>.
+	 *
+	 * @return The request latency histogram, or <code>null</code> if metrics are disabled.
+	 */
+	public Histogram getRequestHistogram(String family, ModelRef modelRef){
+		String model = getModelLabel(modelRef);
+
+		return getHistogram(MetricRegistry.REQUEST_SECONDS, "Request latency in seconds", MetricRegistry.TIME_BUCKETS, "family", family, "owner", getOwnerLabel(modelRef, model), "model", model);
+	}
+
+	/**
+	 * @param modelRef The model, or <code>null</code>.
+	 *
+	 * @return The response counter, or <code>null</code> if metrics are disabled.
+	 */
+	public Counter getResponseCounter(String family, ModelRef modelRef, int status){
+		String model = getModelLabel(modelRef);
+
+		return getCounter(MetricRegistry.RESPONSES_TOTAL, "Responses by status code", "family", family, "owner", getOwnerLabel(modelRef, model), "model", model, "status", String.valueOf(status));
+	}
+
+	/**
+	 * @param modelRef The model, or <code>null</code>.
+	 * @param phase One of <code>parse</code>, <code>prepare</code>, <code>evaluate</code> or <code>serialize</code>.
+	 *
+	 * @return The phase latency histogram, or <code>null</code> if metrics are disabled.
+	 */
+	public Histogram getPhaseHistogram(String family, ModelRef modelRef, String phase){
+		String model = getModelLabel(modelRef);
+
+		return getHistogram(MetricRegistry.PHASE_SECONDS, "Request processing phase latency in seconds", MetricRegistry.TIME_BUCKETS, "family", family, "owner", getOwnerLabel(modelRef, model), "model", model, "phase", phase);
+	}
+
+	/**
+	 * @return The batch size histogram, or <code>null</code> if metrics are disabled.
+	 */
+	public Histogram getBatchSizeHistogram(ModelRef modelRef){
+		String model = getModelLabel(modelRef);
+
+		return getHistogram(MetricRegistry.BATCH_SIZE, "Evaluation batch size in records", MetricRegistry.SIZE_BUCKETS, "owner", getOwnerLabel(modelRef, model), "model", model);
+	}
+
+	/**
+	 * <p>
+	 * Removes all time series that are labeled with the specified model.
+	 * </p>
+	 */
+	public void removeModel(ModelRef modelRef){
+
+		if(!this.enabled || !this.modelLabels){
+			return;
+		}
+
+		String owner = (modelRef.getOwner()).getName();
+		String model = modelRef.getId();
+
+		Collection<Family> families = this.families.values();
+		for(Family family : families){
+			Collection<List<String>> labelsList = (family.metrics).keySet();
+
+			labelsList.removeIf(labels -> Objects.equals(owner, getLabel(labels, "owner")) && Objects.equals(model, getLabel(labels, "model")));
+		}
+	}
+
+	public Counter getCounter(String name, String help, String... labels){
+		return getMetric(name, "counter", help, Counter::new, labels);
+	}
+
+	public Histogram getHistogram(String name, String help, double[] buckets, String... labels){
+		return getMetric(name, "histogram", help, () -> new Histogram(buckets), labels);
+	}
+
+	private <M extends Metric> M getMetric(String name, String type, String help, Supplier<M> supplier, String... labels){
+
+		if(!this.enabled){
+			return null;
+		}
+
+		Family family = this.families.computeIfAbsent(name, key -> new Family(type, help));
+
+		@SuppressWarnings("unchecked")
+		M metric = (M)(family.metrics).computeIfAbsent(Arrays.asList(labels), key -> supplier.get());
+
+		return metric;
+	}
+
+	/**
+	 * <p>
+	 * Writes all metrics in the Prometheus text exposition format version 0.0.4.
+	 * </p>
+	 */
+	public void write(Writer writer) throws IOException {
+		Collection<Map.Entry<String, Family>> entries = this.families.entrySet();
+
+		for(Map.Entry<String, Family> entry : entries){
+			String name = entry.getKey();
+			Family family = entry.getValue();
+
+			writer.write("# HELP " + name + " " + family.help + "\n");
+			writer.write("# TYPE " + name + " " + family.type + "\n");
+
+			Collection<Map.Entry<List<String>, Metric>> metricEntries = (family.metrics).entrySet();
+			for(Map.Entry<List<String>, Metric> metricEntry : metricEntries){
+				Metric metric = metricEntry.getValue();
+
+				metric.write(writer, name, metricEntry.getKey());
+			}
+		}
+
+		writer.flush();
+	}
+
+	public boolean isEnabled(){
+		return this.enabled;
+	}
+
+	private String getModelLabel(ModelRef modelRef){
+
+		if(!this.modelLabels || modelRef == null){
+			return null;
+		} // End if
+
+		// Unknown model identifiers share a single time series
+		if(this.modelRegistry.get(modelRef) == null){
+			return MetricRegistry.UNKNOWN_MODEL;
+		}
+
+		return modelRef.getId();
+	}
+
+	static
+	private String getOwnerLabel(ModelRef modelRef, String model){
+
+		if(model == null || (MetricRegistry.UNKNOWN_MODEL).equals(model)){
+			return null;
+		}
+
+		return (modelRef.getOwner()).getName();
+	}
+
+	static
+	private String getLabel(List<String> labels, String name){
+
+		for(int i = 0; i < labels.size(); i += 2){
+
+			if((name).equals(labels.get(i))){
+				return labels.get(i + 1);
+			}
+		}
+
+		return null;
+	}
+
+	static
+	private void writeSample(Writer writer, String name, List<String> labels, String extraName, String extraValue, String value) throws IOException {
+		StringBuilder sb = new StringBuilder();
+
+		sb.append(name);
+
+		String sep = "{";
+
+		for(int i = 0; i < labels.size(); i += 2){
+			String labelValue = labels.get(i + 1);
+
+			if(labelValue == null){
+				continue;
+			}
+
+			sb.append(sep).append(labels.get(i)).append("=\"").append(escape(labelValue)).append('\"');
+
+			sep = ",";
+		}
+
+		if(extraName != null){
+			sb.append(sep).append(extraName).append("=\"").append(extraValue).append('\"');
+
+			sep = ",";
+		} // End if
+
+		if(!("{").equals(sep)){
+			sb.append('}');
+		}
+
+		sb.append(' ').append(value).append('\n');
+
+		writer.write(sb.toString());
+	}
+
+	static
+	private String escape(String string){
+		return string.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	static
+	private String format(double value){
+
+		if(value == Double.POSITIVE_INFINITY){
+			return "+Inf";
+		} // End if
+
+		if(value == Math.rint(value) && Math.abs(value) < 1e15){
+			return Long.toString((long)value);
+		}
+
+		return Double.toString(value);
+	}
+
+	abstract
+	static public class Metric {
+
+		abstract
+		void write(Writer writer, String name, List<String> labels) throws IOException;
+	}
+
+	static
+	public class Counter extends Metric {
+
+		private LongAdder count = new LongAdder();
+
+
+		public void increment(){
+			this.count.increment();
+		}
+
+		public long getCount(){
+			return this.count.sum();
+		}
+
+		@Override
+		void write(Writer writer, String name, List<String> labels) throws IOException {
+			writeSample(writer, name, labels, null, null, Long.toString(getCount()));
+		}
+	}
+
+	/**
+	 * <p>
+	 * A histogram with fixed bucket boundaries.
+	 * </p>
+	 */
+	static
+	public class Histogram extends Metric {
+
+		private double[] buckets = null;
+
+		private LongAdder[] counts = null;
+
+		private DoubleAdder sum = new DoubleAdder();
+
+
+		public Histogram(double[] buckets){
+			this.buckets = Objects.requireNonNull(buckets);
+
+			// The last slot is the "+Inf" bucket
+			this.counts = new LongAdder[buckets.length + 1];
+
+			for(int i = 0; i < this.counts.length; i++){
+				this.counts[i] = new LongAdder();
+			}
+		}
+
+		public void observe(double value){
+			int index = 0;
+
+			while(index < this.buckets.length && value > this.buckets[index]){
+				index++;
+			}
+
+			this.counts[index].increment();
+			this.sum.add(value);
+		}
+
+		public void observeNanos(long nanos){
+			observe((double)nanos / (double)TimeUnit.SECONDS.toNanos(1));
+		}
+
+		public long getCount(){
+			long result = 0L;
+
+			for(LongAdder count : this.counts){
+				result += count.sum();
+			}
+
+			return result;
+		}
+
+		public double getSum(){
+			return this.sum.sum();
+		}
+
+		@Override
+		void write(Writer writer, String name, List<String> labels) throws IOException {
+			long count = 0L;
+
+			for(int i = 0; i < this.counts.length; i++){
+				count += this.counts[i].sum();
+
+				double bucket = (i < this.buckets.length ? this.buckets[i] : Double.POSITIVE_INFINITY);
+
+				writeSample(writer, name + "_bucket", labels, "le", format(bucket), Long.toString(count));
+			}
+
+			writeSample(writer, name + "_sum", labels, null, null, format(getSum()));
+			writeSample(writer, name + "_count", labels, null, null, Long.toString(count));
+		}
+	}
+
+	static
+	private class Family {
+
+		private String type = null;
+
+		private String help = null;
+
+		private ConcurrentMap<List<String>, Metric> metrics = new ConcurrentHashMap<>();
+
+
+		private Family(String type, String help){
+			this.type = type;
+			this.help = help;
+		}
+	}
+
+	public static final String REQUEST_SECONDS = "openscoring_request_seconds";
+	public static final String RESPONSES_TOTAL = "openscoring_responses_total";
+	public static final String PHASE_SECONDS = "openscoring_phase_seconds";
+	public static final String BATCH_SIZE = "openscoring_batch_size";
+
+	public static final String PHASE_PARSE = "parse";
+	public static final String PHASE_PREPARE = "prepare";
+	public static final String PHASE_EVALUATE = "evaluate";
+	public static final String PHASE_SERIALIZE = "serialize";
+
+	/**
+	 * The model label of unknown model identifiers.
+	 * Model identifiers must start with a letter or a digit, so this value cannot collide with them.
+	 */
+	public static final String UNKNOWN_MODEL = "_unknown";
+
+	public static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+	private static final double[] TIME_BUCKETS = {0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+	private static final double[] SIZE_BUCKETS = {1, 10, 100, 1000, 10000, 100000, 1000000};
+}
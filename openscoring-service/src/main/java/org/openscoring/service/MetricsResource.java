@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.openscoring.service.annotations.Endpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Path("metrics")
+@RolesAllowed (
+	value = {Roles.ADMIN}
+)
+public class MetricsResource {
+
+	private MetricRegistry metricRegistry = null;
+
+
+	@Inject
+	public MetricsResource(MetricRegistry metricRegistry){
+		this.metricRegistry = metricRegistry;
+	}
+
+	@GET
+	@Produces(MetricRegistry.PROMETHEUS_TEXT)
+	@Endpoint (
+		family = Endpoint.Family.INFORMATION
+	)
+	public StreamingOutput query(){
+
+		if(!this.metricRegistry.isEnabled()){
+			logger.error("Not found");
+
+			throw new NotFoundException();
+		}
+
+		StreamingOutput output = (os) -> {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+
+			this.metricRegistry.write(writer);
+		};
+
+		return output;
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(MetricsResource.class);
+}
@@ -23,66 +23,337 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.dmg.pmml.MiningFunction;
 import org.jpmml.evaluator.Evaluator;
 import org.openscoring.common.Field;
+import org.openscoring.service.visitors.PMMLObjectInterner;
 
+/**
+ * <p>
+ * A deployed model.
+ * </p>
+ *
+ * <p>
+ * A model that has an {@link EvaluatorLoader evaluator loader} can be evicted,
+ * which releases its evaluator until the next call to {@link #getEvaluator()}.
+ * The schema, the argument binder and the properties remain available at all times.
+ * </p>
+ *
+ * <p>
+ * A model is reference counted.
+ * The model registry holds one reference for as long as the model is deployed,
+ * and every in-flight evaluation holds one more.
+ * When the last reference is released, the model releases its evaluator for good.
+ * </p>
+ */
 public class Model {
 
-	private Evaluator evaluator = null;
+	private volatile Evaluator evaluator = null;
+
+	private EvaluatorLoader evaluatorLoader = null;
+
+	private String modelName = null;
+
+	private MiningFunction miningFunction = null;
+
+	private String summary = null;
 
 	private Map<String, Object> properties = null;
 
 	private Map<String, List<Field>> schema = null;
 
+	private ArgumentBinder argumentBinder = null;
+
+	private volatile ModelStore.Entry storeEntry = null;
+
+	private volatile Long heapSize = null;
+
+	private volatile long evaluatorHeapSize = 0L;
+
+	private volatile long accessedTimestamp = 0L;
+
+	private LongAdder accessCount = new LongAdder();
+
+	private AtomicInteger referenceCount = new AtomicInteger(1);
+
 
 	public Model(Model model){
 		setEvaluator(model.getEvaluator());
-		setProperties(model.getProperties());
+		setEvaluatorLoader(model.getEvaluatorLoader());
+		setModelName(model.getModelName());
+		setMiningFunction(model.getMiningFunction());
+		setSummary(model.getSummary());
+		setProperties(model.properties);
 		setSchema(model.getSchema());
+		setArgumentBinder(model.getArgumentBinder());
+		setStoreEntry(model.getStoreEntry());
+
+		this.heapSize = model.heapSize;
+		this.evaluatorHeapSize = model.evaluatorHeapSize;
 	}
 
 	public Model(Evaluator evaluator){
+		this(evaluator, new ArgumentBinder(evaluator));
+	}
+
+	public Model(Evaluator evaluator, ArgumentBinder argumentBinder){
 		setEvaluator(evaluator);
+		setMiningFunction(evaluator.getMiningFunction());
+		setSummary(evaluator.getSummary());
 
 		Map<String, Object> properties = new LinkedHashMap<>();
 		properties.put(Model.PROPERTY_CREATED_TIMESTAMP, new Date());
 		properties.put(Model.PROPERTY_ACCESSED_TIMESTAMP, null);
+		properties.put(Model.PROPERTY_ACCESSED_COUNT, null);
 
 		setProperties(properties);
 
 		setSchema(ModelUtil.encodeSchema(evaluator));
+		setArgumentBinder(argumentBinder);
 	}
 
+	/**
+	 * <p>
+	 * Gets the evaluator, materializing it first if the model has been evicted.
+	 * </p>
+	 *
+	 * @throws IllegalStateException If the evaluator could not be materialized.
+	 */
 	public Evaluator getEvaluator(){
-		return this.evaluator;
+		Evaluator evaluator = this.evaluator;
+
+		if(evaluator == null){
+			evaluator = materialize();
+		}
+
+		return evaluator;
 	}
 
 	private void setEvaluator(Evaluator evaluator){
 		this.evaluator = Objects.requireNonNull(evaluator);
 	}
 
+	public boolean isMaterialized(){
+		return (this.evaluator != null);
+	}
+
+	/**
+	 * @return The evaluator, or <code>null</code> if the model has been evicted.
+	 */
+	public Evaluator getMaterializedEvaluator(){
+		return this.evaluator;
+	}
+
+	synchronized
+	private Evaluator materialize(){
+		Evaluator evaluator = this.evaluator;
+
+		if(evaluator == null){
+			EvaluatorLoader evaluatorLoader = getEvaluatorLoader();
+
+			if(evaluatorLoader == null){
+				throw new IllegalStateException("The model has been released");
+			}
+
+			try {
+				evaluator = evaluatorLoader.load();
+			} catch(Exception e){
+				throw new IllegalStateException("Failed to materialize the model evaluator", e);
+			}
+
+			setEvaluator(evaluator);
+		}
+
+		return evaluator;
+	}
+
+	/**
+	 * @return <code>true</code> if the evaluator was released, <code>false</code> otherwise.
+	 */
+	synchronized
+	public boolean evict(){
+
+		if(this.evaluatorLoader == null || this.evaluator == null){
+			return false;
+		}
+
+		this.evaluator = null;
+
+		return true;
+	}
+
+	/**
+	 * @return <code>true</code> if a reference was acquired, <code>false</code> if the model has already been released.
+	 *
+	 * @see #release()
+	 */
+	public boolean acquire(){
+
+		while(true){
+			int referenceCount = this.referenceCount.get();
+
+			if(referenceCount <= 0){
+				return false;
+			} // End if
+
+			if(this.referenceCount.compareAndSet(referenceCount, referenceCount + 1)){
+				return true;
+			}
+		}
+	}
+
+	public void release(){
+		int referenceCount = this.referenceCount.decrementAndGet();
+
+		if(referenceCount == 0){
+			close();
+		} else
+
+		if(referenceCount < 0){
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if there are in-flight evaluations, <code>false</code> otherwise.
+	 */
+	public boolean isInUse(){
+		return (this.referenceCount.get() > 1);
+	}
+
+	synchronized
+	private void close(){
+		this.evaluator = null;
+		this.evaluatorLoader = null;
+	}
+
+	public boolean isEvictable(){
+		return (this.evaluatorLoader != null);
+	}
+
+	public EvaluatorLoader getEvaluatorLoader(){
+		return this.evaluatorLoader;
+	}
+
+	synchronized
+	public void setEvaluatorLoader(EvaluatorLoader evaluatorLoader){
+		this.evaluatorLoader = evaluatorLoader;
+	}
+
+	/**
+	 * @return The requested name of the model element, or <code>null</code> if the default model element was requested.
+	 */
+	public String getModelName(){
+		return this.modelName;
+	}
+
+	public void setModelName(String modelName){
+		this.modelName = modelName;
+	}
+
 	public MiningFunction getMiningFunction(){
-		Evaluator evaluator = getEvaluator();
+		return this.miningFunction;
+	}
 
-		return evaluator.getMiningFunction();
+	private void setMiningFunction(MiningFunction miningFunction){
+		this.miningFunction = miningFunction;
 	}
 
 	public String getSummary(){
-		Evaluator evaluator = getEvaluator();
+		return this.summary;
+	}
+
+	private void setSummary(String summary){
+		this.summary = summary;
+	}
+
+	/**
+	 * <p>
+	 * Records an access.
+	 * </p>
+	 *
+	 * <p>
+	 * This method is called by every evaluation request, and must therefore be cheap and contention-free.
+	 * The access count is striped, and the access timestamp is updated at most once per {@link #ACCESSED_TIMESTAMP_RESOLUTION resolution period}.
+	 * </p>
+	 */
+	public void touch(){
+		this.accessCount.increment();
+
+		long timestamp = System.currentTimeMillis();
+
+		if(timestamp - this.accessedTimestamp >= Model.ACCESSED_TIMESTAMP_RESOLUTION){
+			this.accessedTimestamp = timestamp;
+		}
+	}
 
-		return evaluator.getSummary();
+	/**
+	 * @return The time of the last access in milliseconds, or <code>0</code> if the model has never been accessed.
+	 */
+	public long getAccessedTimestamp(){
+		return this.accessedTimestamp;
 	}
 
+	public long getAccessCount(){
+		return this.accessCount.sum();
+	}
+
+	public Object getProperty(String key){
+
+		if((Model.PROPERTY_ACCESSED_TIMESTAMP).equals(key)){
+			long accessedTimestamp = getAccessedTimestamp();
+
+			return (accessedTimestamp != 0L ? new Date(accessedTimestamp) : null);
+		} else
+
+		if((Model.PROPERTY_ACCESSED_COUNT).equals(key)){
+			return getAccessCount();
+		} else
+
+		if((Model.PROPERTY_HEAP_SIZE).equals(key)){
+			return this.heapSize;
+		}
+
+		return this.properties.get(key);
+	}
+
+	/**
+	 * <p>
+	 * Properties must only be put before the model is published (ie. deployed), because the underlying map is not thread-safe.
+	 * </p>
+	 */
 	public Object putProperty(String key, Object value){
-		Map<String, Object> properties = getProperties();
 
-		return properties.put(key, value);
+		if((Model.PROPERTY_HEAP_SIZE).equals(key)){
+			Long heapSize = this.heapSize;
+
+			this.heapSize = (value != null ? ((Number)value).longValue() : null);
+
+			return heapSize;
+		}
+
+		return this.properties.put(key, value);
 	}
 
+	/**
+	 * @return A modifiable snapshot of model properties, including access statistics.
+	 */
 	public Map<String, Object> getProperties(){
-		return this.properties;
+		Map<String, Object> result = new LinkedHashMap<>(this.properties);
+
+		result.put(Model.PROPERTY_ACCESSED_TIMESTAMP, getProperty(Model.PROPERTY_ACCESSED_TIMESTAMP));
+		result.put(Model.PROPERTY_ACCESSED_COUNT, getProperty(Model.PROPERTY_ACCESSED_COUNT));
+
+		Long heapSize = this.heapSize;
+		if(heapSize != null){
+			result.put(Model.PROPERTY_HEAP_SIZE, heapSize);
+		}
+
+		return result;
 	}
 
 	private void setProperties(Map<String, Object> properties){
@@ -97,11 +368,91 @@ public class Model {
 		this.schema = Objects.requireNonNull(schema);
 	}
 
+	/**
+	 * <p>
+	 * Estimates the heap footprint of the evaluator and the argument binder, and records it as a model property.
+	 * An evicted model is materialized first.
+	 * </p>
+	 *
+	 * <p>
+	 * PMML objects that are shared between PMML documents are not charged to any model.
+	 * The size of the evaluator is also recorded separately, so that models that share an evaluator can be charged for it once.
+	 * The estimate is kept in volatile fields, so it is safe to re-estimate a deployed model.
+	 * </p>
+	 *
+	 * @return The estimated size in bytes.
+	 *
+	 * @see HeapEstimator
+	 * @see PMMLObjectInterner
+	 */
+	public long estimateHeapSize(){
+		Set<Object> visited = HeapEstimator.newIdentitySet();
+		visited.addAll(PMMLObjectInterner.getSharedObjects());
+
+		long evaluatorHeapSize = HeapEstimator.estimate(visited, getEvaluator());
+		long heapSize = evaluatorHeapSize + HeapEstimator.estimate(visited, getArgumentBinder());
+
+		this.evaluatorHeapSize = evaluatorHeapSize;
+		this.heapSize = heapSize;
+
+		return heapSize;
+	}
+
+	/**
+	 * @return The estimated size of the evaluator in bytes, or <code>0</code> if not estimated.
+	 *
+	 * @see #estimateHeapSize()
+	 */
+	public long getEvaluatorHeapSize(){
+		return this.evaluatorHeapSize;
+	}
+
+	public ArgumentBinder getArgumentBinder(){
+		return this.argumentBinder;
+	}
+
+	private void setArgumentBinder(ArgumentBinder argumentBinder){
+		this.argumentBinder = Objects.requireNonNull(argumentBinder);
+	}
+
+	/**
+	 * @return The stored PMML document, or <code>null</code>.
+	 */
+	public ModelStore.Entry getStoreEntry(){
+		return this.storeEntry;
+	}
+
+	public void setStoreEntry(ModelStore.Entry storeEntry){
+		this.storeEntry = storeEntry;
+	}
+
+	@FunctionalInterface
+	public interface EvaluatorLoader {
+
+		Evaluator load() throws Exception;
+	}
+
+	public static final long ACCESSED_TIMESTAMP_RESOLUTION = 1000L;
+
 	public static final String PROPERTY_CREATED_TIMESTAMP = "created.timestamp";
 	public static final String PROPERTY_ACCESSED_TIMESTAMP = "accessed.timestamp";
+	public static final String PROPERTY_ACCESSED_COUNT = "accessed.count";
+
+	public static final String PROPERTY_REVISION = "revision";
 
 	public static final String PROPERTY_FILE_SIZE = "file.size";
 	public static final String PROPERTY_FILE_CHECKSUM = "file.checksum";
 
 	public static final String PROPERTY_MODEL_VERSION = "model.version";
+
+	public static final String PROPERTY_HEAP_SIZE = "heap.size";
+
+	public static final String PROPERTY_INTERNER_SHARED_COUNT = "interner.sharedCount";
+	public static final String PROPERTY_INTERNER_SAVED_SIZE = "interner.savedSize";
+
+	public static final String PROPERTY_VALUE_CACHE_HIT_COUNT = "valueCache.hitCount";
+	public static final String PROPERTY_VALUE_CACHE_MISS_COUNT = "valueCache.missCount";
+
+	public static final String PROPERTY_RESULT_CACHE_HIT_COUNT = "resultCache.hitCount";
+	public static final String PROPERTY_RESULT_CACHE_MISS_COUNT = "resultCache.missCount";
 }
\ No newline at end of file
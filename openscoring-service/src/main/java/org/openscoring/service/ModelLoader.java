@@ -0,0 +1,448 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.FileBackedOutputStream;
+import jakarta.xml.bind.JAXBException;
+import org.dmg.pmml.Header;
+import org.dmg.pmml.PMML;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.EvaluatorBuilder;
+import org.jpmml.evaluator.HasModel;
+import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import org.openscoring.service.visitors.PMMLObjectInterner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * <p>
+ * Loads PMML documents into {@link Model} objects.
+ * </p>
+ *
+ * <p>
+ * Shared between the deployment of uploaded PMML documents, and the restoration of stored PMML documents.
+ * </p>
+ *
+ * <p>
+ * Optionally, ready-to-evaluate evaluators are saved as Java serialization snapshots,
+ * keyed by the checksum of the PMML document and the model name.
+ * Loading the same PMML document again restores the evaluator from its snapshot,
+ * which skips XML parsing, validation and visitor application.
+ * A snapshot that is missing, unreadable, or was created using a different configuration, is ignored.
+ * </p>
+ *
+ * <p>
+ * Optionally, loaded evaluators are shared between models, keyed the same way.
+ * Evaluators are immutable and thread-safe, so deploying an already loaded PMML document (eg. under a different identifier)
+ * skips the loading altogether, and only creates a new {@link Model} object around the existing evaluator.
+ * A shared evaluator is weakly referenced, and is forgotten when no model is holding on to it.
+ * </p>
+ *
+ * <p>
+ * Both options require the checksum of the PMML document to be known before parsing,
+ * so the PMML document is spooled first. Small PMML documents are kept in memory,
+ * whereas large PMML documents are written to a temporary file, which is deleted after parsing.
+ * </p>
+ */
+public class ModelLoader {
+
+	private LoadingModelEvaluatorBuilder modelEvaluatorBuilder = null;
+
+	private long valueCacheSize = 0L;
+
+	private Cache<String, Evaluator> evaluators = null;
+
+	private Path snapshotDirectory = null;
+
+	private String fingerprint = null;
+
+	private int spoolThreshold = ModelLoader.DEFAULT_SPOOL_THRESHOLD;
+
+	private long maxUploadSize = 0L;
+
+
+	public ModelLoader(LoadingModelEvaluatorBuilder modelEvaluatorBuilder, long valueCacheSize){
+		this(modelEvaluatorBuilder, valueCacheSize, false, null, null);
+	}
+
+	public ModelLoader(LoadingModelEvaluatorBuilder modelEvaluatorBuilder, long valueCacheSize, Path snapshotDirectory, String fingerprint){
+		this(modelEvaluatorBuilder, valueCacheSize, false, snapshotDirectory, fingerprint);
+	}
+
+	public ModelLoader(LoadingModelEvaluatorBuilder modelEvaluatorBuilder, long valueCacheSize, boolean shareEvaluators, Path snapshotDirectory, String fingerprint){
+		this(modelEvaluatorBuilder, valueCacheSize, shareEvaluators, snapshotDirectory, fingerprint, ModelLoader.DEFAULT_SPOOL_THRESHOLD, 0L);
+	}
+
+	/**
+	 * @param shareEvaluators Should the evaluators of identical PMML documents be shared or not?
+	 * @param snapshotDirectory The snapshot directory, or <code>null</code>.
+	 * @param fingerprint A string that identifies the configuration of the model evaluator builder and the version of the JPMML-Evaluator library.
+	 * @param spoolThreshold The size of the largest PMML document (in bytes) that is spooled in memory.
+	 * @param maxUploadSize The size of the largest uploaded PMML document (in bytes), or <code>0</code> for no limit.
+	 */
+	public ModelLoader(LoadingModelEvaluatorBuilder modelEvaluatorBuilder, long valueCacheSize, boolean shareEvaluators, Path snapshotDirectory, String fingerprint, int spoolThreshold, long maxUploadSize){
+		this.modelEvaluatorBuilder = modelEvaluatorBuilder;
+		this.valueCacheSize = valueCacheSize;
+
+		if(spoolThreshold < 0){
+			throw new IllegalArgumentException("Spool threshold must be non-negative");
+		}
+
+		this.spoolThreshold = spoolThreshold;
+
+		if(maxUploadSize < 0L){
+			throw new IllegalArgumentException("Max upload size must be non-negative");
+		}
+
+		this.maxUploadSize = maxUploadSize;
+
+		if(shareEvaluators){
+			this.evaluators = CacheBuilder.newBuilder()
+				.weakValues()
+				.build();
+		}
+
+		if(snapshotDirectory != null){
+			this.snapshotDirectory = snapshotDirectory;
+			this.fingerprint = Objects.requireNonNull(fingerprint);
+
+			try {
+				Files.createDirectories(snapshotDirectory);
+			} catch(IOException ioe){
+				throw new IllegalArgumentException(ioe);
+			}
+		}
+	}
+
+	/**
+	 * @throws SAXException If the PMML document could not be parsed.
+	 * @throws JAXBException If the PMML document could not be parsed.
+	 * @throws RuntimeException If the PMML document does not contain a valid scorable model element.
+	 */
+	public Model load(InputStream is, String modelName) throws IOException, SAXException, JAXBException {
+
+		if(this.evaluators == null && this.snapshotDirectory == null){
+			CountingInputStream countingIs = new CountingInputStream(is);
+
+			HashingInputStream hashingIs = new HashingInputStream(Hashing.sha256(), countingIs);
+
+			Evaluator evaluator = build(hashingIs, modelName);
+
+			return createModel(evaluator, modelName, countingIs.getCount(), (hashingIs.hash()).toString());
+		}
+
+		// The checksum must be known before parsing
+		FileBackedOutputStream spoolOs = new FileBackedOutputStream(this.spoolThreshold);
+
+		try {
+			HashingOutputStream hashingOs = new HashingOutputStream(Hashing.sha256(), spoolOs);
+
+			long size = ByteStreams.copy(is, hashingOs);
+
+			hashingOs.close();
+
+			String checksum = (hashingOs.hash()).toString();
+
+			Evaluator evaluator = loadEvaluator(() -> (spoolOs.asByteSource()).openStream(), modelName, checksum);
+
+			return createModel(evaluator, modelName, size, checksum);
+		} finally {
+			// Deletes the temporary file (if any)
+			spoolOs.reset();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Loads a PMML document that has already been received in full (eg. spooled by the request thread).
+	 * </p>
+	 */
+	public Model load(ByteSource byteSource, String modelName) throws IOException, SAXException, JAXBException {
+
+		if(this.evaluators == null && this.snapshotDirectory == null){
+
+			try(InputStream is = byteSource.openStream()){
+				return load(is, modelName);
+			}
+		}
+
+		String checksum = (byteSource.hash(Hashing.sha256())).toString();
+
+		Evaluator evaluator = loadEvaluator(byteSource::openStream, modelName, checksum);
+
+		return createModel(evaluator, modelName, byteSource.size(), checksum);
+	}
+
+	/**
+	 * <p>
+	 * Limits an uploaded PMML document to the max upload size.
+	 * </p>
+	 *
+	 * @see LimitedInputStream#isExceeded()
+	 */
+	public InputStream limitUpload(InputStream is){
+
+		if(this.maxUploadSize == 0L){
+			return is;
+		}
+
+		return new LimitedInputStream(is, this.maxUploadSize);
+	}
+
+	/**
+	 * <p>
+	 * Loads a stored PMML document, whose original checksum is known in advance.
+	 * </p>
+	 *
+	 * @param supplier A supplier of the PMML document, which is invoked only if there is no usable snapshot.
+	 */
+	public Model load(StreamSupplier supplier, String modelName, String checksum) throws IOException, SAXException, JAXBException {
+
+		if((this.evaluators == null && this.snapshotDirectory == null) || checksum == null){
+
+			try(InputStream is = supplier.open()){
+				return load(is, modelName);
+			}
+		}
+
+		Evaluator evaluator = loadEvaluator(supplier, modelName, checksum);
+
+		return createModel(evaluator, modelName, null, checksum);
+	}
+
+	/**
+	 * <p>
+	 * Loads the evaluator of a PMML document, preferring a shared evaluator, and then its snapshot.
+	 * </p>
+	 *
+	 * @see Model#getEvaluator()
+	 */
+	public Evaluator loadEvaluator(StreamSupplier supplier, String modelName, String checksum) throws IOException, SAXException, JAXBException {
+
+		if(checksum == null){
+
+			try(InputStream is = supplier.open()){
+				return build(is, modelName);
+			}
+		}
+
+		String key = getKey(checksum, modelName);
+
+		Evaluator evaluator = (this.evaluators != null ? this.evaluators.getIfPresent(key) : null);
+		if(evaluator != null){
+			logger.info("Reusing the model evaluator of PMML document {}", checksum);
+
+			return evaluator;
+		} // End if
+
+		if(this.snapshotDirectory != null){
+			evaluator = readSnapshot(key);
+		} // End if
+
+		if(evaluator == null){
+
+			try(InputStream is = supplier.open()){
+				evaluator = build(is, modelName);
+			}
+
+			if(this.snapshotDirectory != null){
+				writeSnapshot(key, evaluator);
+			}
+		} // End if
+
+		if(this.evaluators != null){
+			// Concurrent loads of the same PMML document settle on the first evaluator
+			Evaluator sharedEvaluator = (this.evaluators.asMap()).putIfAbsent(key, evaluator);
+
+			if(sharedEvaluator != null){
+				evaluator = sharedEvaluator;
+			}
+		}
+
+		return evaluator;
+	}
+
+	public Model.EvaluatorLoader createEvaluatorLoader(ModelStore.Entry entry){
+		Map<String, Object> properties = entry.getProperties();
+
+		String checksum = (String)properties.get(Model.PROPERTY_FILE_CHECKSUM);
+
+		return () -> loadEvaluator(entry::open, entry.getModelName(), checksum);
+	}
+
+	public LoadingModelEvaluatorBuilder getModelEvaluatorBuilder(){
+		return this.modelEvaluatorBuilder;
+	}
+
+	public boolean isSharingEvaluators(){
+		return (this.evaluators != null);
+	}
+
+	public Path getSnapshotDirectory(){
+		return this.snapshotDirectory;
+	}
+
+	public int getSpoolThreshold(){
+		return this.spoolThreshold;
+	}
+
+	public long getMaxUploadSize(){
+		return this.maxUploadSize;
+	}
+
+	private Evaluator build(InputStream is, String modelName) throws SAXException, JAXBException {
+		EvaluatorBuilder evaluatorBuilder = this.modelEvaluatorBuilder.clone()
+			.load(is, modelName);
+
+		Evaluator evaluator = evaluatorBuilder.build();
+
+		evaluator.verify();
+
+		return evaluator;
+	}
+
+	private Model createModel(Evaluator evaluator, String modelName, Number size, String checksum){
+		Model model = new Model(evaluator, new ArgumentBinder(evaluator, this.valueCacheSize));
+		model.setModelName(modelName);
+		model.putProperty(Model.PROPERTY_FILE_SIZE, size);
+		model.putProperty(Model.PROPERTY_FILE_CHECKSUM, checksum);
+
+		HasModel<?> hasModel = (HasModel<?>)evaluator;
+
+		PMML pmml = hasModel.getPMML();
+
+		Header header = pmml.getHeader();
+
+		model.putProperty(Model.PROPERTY_MODEL_VERSION, header != null ? header.getModelVersion() : null);
+
+		PMMLObjectInterner.Savings savings = PMMLObjectInterner.getSavings(pmml);
+		if(savings != null){
+			model.putProperty(Model.PROPERTY_INTERNER_SHARED_COUNT, savings.getCount());
+			model.putProperty(Model.PROPERTY_INTERNER_SAVED_SIZE, savings.getSize());
+		}
+
+		return model;
+	}
+
+	private Evaluator readSnapshot(String key){
+		Path snapshotFile = getSnapshotFile(key);
+
+		try(ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(snapshotFile))){
+			String fingerprint = ois.readUTF();
+
+			if(!(this.fingerprint).equals(fingerprint)){
+				logger.info("Ignoring stale snapshot {}", snapshotFile);
+
+				return null;
+			}
+
+			Evaluator evaluator = (Evaluator)ois.readObject();
+
+			logger.info("Restored model evaluator from snapshot {}", snapshotFile);
+
+			return evaluator;
+		} catch(NoSuchFileException nsfe){
+			return null;
+		} catch(Exception e){
+			logger.warn("Failed to read snapshot " + snapshotFile, e);
+
+			return null;
+		}
+	}
+
+	private void writeSnapshot(String key, Evaluator evaluator){
+		Path snapshotFile = getSnapshotFile(key);
+		Path tmpSnapshotFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+
+		try {
+			try(OutputStream os = Files.newOutputStream(tmpSnapshotFile)){
+				ObjectOutputStream oos = new ObjectOutputStream(os);
+
+				oos.writeUTF(this.fingerprint);
+				oos.writeObject(evaluator);
+
+				oos.flush();
+			}
+
+			try {
+				Files.move(tmpSnapshotFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch(AtomicMoveNotSupportedException amnse){
+				Files.move(tmpSnapshotFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch(Exception e){
+			// Snapshots are an optimization, so failing to write one must not fail the deployment
+			logger.warn("Failed to write snapshot " + snapshotFile, e);
+		} finally {
+
+			try {
+				Files.deleteIfExists(tmpSnapshotFile);
+			} catch(IOException ioe){
+				// Ignored
+			}
+		}
+	}
+
+	private Path getSnapshotFile(String key){
+		return (this.snapshotDirectory).resolve(key + ".ser");
+	}
+
+	static
+	private String getKey(String checksum, String modelName){
+		String key = checksum;
+
+		// The same PMML document may be loaded with different model names
+		if(modelName != null){
+			key += "-" + (Hashing.sha256().hashString(modelName, StandardCharsets.UTF_8)).toString().substring(0, 16);
+		}
+
+		return key;
+	}
+
+	public interface StreamSupplier {
+
+		InputStream open() throws IOException;
+	}
+
+	public static final int DEFAULT_SPOOL_THRESHOLD = 16 * 1024 * 1024;
+
+	private static final Logger logger = LoggerFactory.getLogger(ModelLoader.class);
+}
@@ -19,16 +19,53 @@
 package org.openscoring.service;
 
 import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
+import com.google.common.util.concurrent.Striped;
+import org.jpmml.evaluator.Evaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Owners are identified by their {@link Principal#getName() principal name},
+ * so that models can be put on behalf of an owner (eg. when restoring them from a model store) before the owner makes its first request.
+ * </p>
+ *
+ * <p>
+ * In lazy mode, evictable models are materialized when they are accessed for evaluation,
+ * and the least valuable materialized models are evicted whenever their combined weight exceeds the heap budget.
+ * The weight of a model is its estimated heap size, or the size of its PMML document if the former is not known.
+ * The value of a model is its access count, discounted by the time since its last access.
+ * </p>
+ *
+ * <p>
+ * Optionally, the combined estimated heap size of the models of every owner is limited by a quota.
+ * </p>
+ *
+ * <p>
+ * The registry holds a reference to every deployed model, which it releases when the model is replaced or removed.
+ * Evaluations should {@link #acquire(ModelRef, boolean) acquire} the model,
+ * so that the replaced model is not released before they have finished.
+ * </p>
+ */
 public class ModelRegistry {
 
-	private ConcurrentMap<Principal, ConcurrentMap<String, Model>> models = new ConcurrentHashMap<>();
+	private ConcurrentMap<Owner, ConcurrentMap<String, Model>> models = new ConcurrentHashMap<>();
 
 	private Function<Principal, ConcurrentMap<String, Model>> initializer = new Function<Principal, ConcurrentMap<String, Model>>(){
 
@@ -38,12 +75,39 @@ public class ModelRegistry {
 		}
 	};
 
+	private boolean lazy = false;
+
+	private long heapBudget = 0L;
+
+	private long accessHalfLife = 0L;
+
+	private long ownerHeapQuota = 0L;
+
+	private Lock trimLock = new ReentrantLock();
+
+	private Striped<Lock> locks = Striped.lazyWeakLock(64);
+
+	private AtomicLong revision = new AtomicLong();
+
 
 	public ModelRegistry(){
+		this(false, 0L, Duration.ZERO, 0L);
+	}
+
+	/**
+	 * @param heapBudget The heap budget in bytes, or <code>0</code> for unlimited.
+	 * @param accessHalfLife The half-life of access counts.
+	 * @param ownerHeapQuota The per-owner heap quota in bytes, or <code>0</code> for unlimited.
+	 */
+	public ModelRegistry(boolean lazy, long heapBudget, Duration accessHalfLife, long ownerHeapQuota){
+		this.lazy = lazy;
+		this.heapBudget = heapBudget;
+		this.accessHalfLife = accessHalfLife.toMillis();
+		this.ownerHeapQuota = ownerHeapQuota;
 	}
 
 	public Map<String, Model> getModels(Principal owner){
-		return this.models.computeIfAbsent(owner, getInitializer());
+		return this.models.computeIfAbsent(new Owner(owner.getName()), key -> (getInitializer()).apply(owner));
 	}
 
 	public Model get(ModelRef modelRef){
@@ -55,15 +119,57 @@ public class ModelRegistry {
 
 		Model model = models.get(modelRef.getId());
 		if(model != null && touch){
-			model.putProperty(Model.PROPERTY_ACCESSED_TIMESTAMP, new Date());
+			model.touch();
 		}
 
 		return model;
 	}
 
+	/**
+	 * <p>
+	 * Gets a model, and acquires a reference to it.
+	 * In lazy mode, the model is also materialized.
+	 * </p>
+	 *
+	 * @return The model, or <code>null</code>.
+	 * The caller must {@link Model#release() release} a non-<code>null</code> model when done with it.
+	 */
+	public Model acquire(ModelRef modelRef, boolean touch){
+
+		while(true){
+			Model model = get(modelRef, touch);
+
+			if(model == null){
+				return null;
+			} // End if
+
+			// Lost the race against a concurrent replacement or removal, try again
+			if(!model.acquire()){
+				continue;
+			} // End if
+
+			if(this.lazy && !model.isMaterialized()){
+
+				try {
+					model.getEvaluator();
+				} catch(RuntimeException re){
+					model.release();
+
+					throw re;
+				}
+
+				trim(model);
+			}
+
+			return model;
+		}
+	}
+
 	public boolean put(ModelRef modelRef, Model model){
 		Map<String, Model> models = getModels(modelRef.getOwner());
 
+		assignRevision(model);
+
 		Model oldModel = models.putIfAbsent(modelRef.getId(), Objects.requireNonNull(model));
 
 		return (oldModel == null);
@@ -72,13 +178,228 @@ public class ModelRegistry {
 	public boolean replace(ModelRef modelRef, Model oldModel, Model model){
 		Map<String, Model> models = getModels(modelRef.getOwner());
 
-		return models.replace(modelRef.getId(), oldModel, Objects.requireNonNull(model));
+		assignRevision(model);
+
+		boolean success = models.replace(modelRef.getId(), oldModel, Objects.requireNonNull(model));
+		if(success){
+			oldModel.release();
+		}
+
+		return success;
+	}
+
+	/**
+	 * <p>
+	 * Puts a model, replacing the current model if there is one.
+	 * </p>
+	 *
+	 * <p>
+	 * The replaced model is released when its last in-flight evaluation has finished.
+	 * </p>
+	 *
+	 * @return The replaced model, or <code>null</code>.
+	 */
+	public Model swap(ModelRef modelRef, Model model){
+		Map<String, Model> models = getModels(modelRef.getOwner());
+
+		assignRevision(model);
+
+		Model oldModel = models.put(modelRef.getId(), Objects.requireNonNull(model));
+		if(oldModel != null){
+			oldModel.release();
+		}
+
+		return oldModel;
 	}
 
 	public boolean remove(ModelRef modelRef, Model model){
 		Map<String, Model> models = getModels(modelRef.getOwner());
 
-		return models.remove(modelRef.getId(), model);
+		boolean success = models.remove(modelRef.getId(), model);
+		if(success){
+			model.release();
+		}
+
+		return success;
+	}
+
+	/**
+	 * @return <code>true</code> if some owner has a model that was deployed from a PMML document with the specified checksum
+	 * and the specified requested model name, <code>false</code> otherwise.
+	 */
+	public boolean containsChecksum(String checksum, String modelName){
+		Collection<ConcurrentMap<String, Model>> ownerModels = (this.models).values();
+
+		for(ConcurrentMap<String, Model> models : ownerModels){
+
+			for(Model model : models.values()){
+
+				if(Objects.equals(checksum, model.getProperty(Model.PROPERTY_FILE_CHECKSUM)) && Objects.equals(modelName, model.getModelName())){
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The combined estimated heap size of the models of the specified owner, in bytes.
+	 *
+	 * @see #getHeapSize(Collection)
+	 */
+	public long getHeapSize(Principal owner){
+		Map<String, Model> models = getModels(owner);
+
+		return getHeapSize(models.values());
+	}
+
+	/**
+	 * <p>
+	 * Checks if the owner would stay within its heap quota, if the specified model was put.
+	 * </p>
+	 *
+	 * <p>
+	 * The check is not atomic with respect to the deployments of other models of the same owner.
+	 * </p>
+	 */
+	public boolean checkQuota(ModelRef modelRef, Model model){
+
+		if(this.ownerHeapQuota <= 0L){
+			return true;
+		}
+
+		Map<String, Model> models = getModels(modelRef.getOwner());
+
+		List<Model> ownerModels = new ArrayList<>();
+		ownerModels.add(model);
+
+		Collection<Map.Entry<String, Model>> entries = models.entrySet();
+		for(Map.Entry<String, Model> entry : entries){
+
+			// The current model is going to be replaced
+			if((modelRef.getId()).equals(entry.getKey())){
+				continue;
+			}
+
+			ownerModels.add(entry.getValue());
+		}
+
+		return (getHeapSize(ownerModels) <= this.ownerHeapQuota);
+	}
+
+	/**
+	 * @return A lock that serializes the modifications of the specified model.
+	 */
+	public Lock getLock(ModelRef modelRef){
+		return this.locks.get(modelRef);
+	}
+
+	private void assignRevision(Model model){
+		model.putProperty(Model.PROPERTY_REVISION, this.revision.incrementAndGet());
+	}
+
+	/**
+	 * <p>
+	 * Evicts materialized models until their combined weight fits into the heap budget.
+	 * </p>
+	 *
+	 * @param retainedModel A model that must not be evicted, or <code>null</code>.
+	 */
+	public void trim(Model retainedModel){
+
+		if(!this.lazy || this.heapBudget <= 0L){
+			return;
+		}
+
+		// Let a single thread do the work, everybody else may proceed immediately
+		if(!this.trimLock.tryLock()){
+			return;
+		}
+
+		try {
+			long now = System.currentTimeMillis();
+
+			long weight = 0L;
+
+			List<Candidate> candidates = new ArrayList<>();
+
+			Collection<ConcurrentMap<String, Model>> ownerModels = (this.models).values();
+			for(ConcurrentMap<String, Model> models : ownerModels){
+
+				for(Model model : models.values()){
+
+					if(!model.isMaterialized()){
+						continue;
+					}
+
+					long modelWeight = getWeight(model);
+
+					weight += modelWeight;
+
+					// Models with in-flight evaluations would be materialized again right away
+					if(model.isEvictable() && !model.isInUse() && model != retainedModel){
+						candidates.add(new Candidate(model, modelWeight, getValue(model, now)));
+					}
+				}
+			}
+
+			if(weight <= this.heapBudget){
+				return;
+			}
+
+			candidates.sort(Comparator.comparingDouble(candidate -> candidate.value));
+
+			int count = 0;
+
+			for(Candidate candidate : candidates){
+
+				if(weight <= this.heapBudget){
+					break;
+				} // End if
+
+				if((candidate.model).evict()){
+					weight -= candidate.weight;
+
+					count++;
+				}
+			}
+
+			logger.debug("Evicted {} model(s)", count);
+		} finally {
+			this.trimLock.unlock();
+		}
+	}
+
+	private double getValue(Model model, long now){
+		long timestamp = model.getAccessedTimestamp();
+		if(timestamp == 0L){
+			Date createdTimestamp = (Date)model.getProperty(Model.PROPERTY_CREATED_TIMESTAMP);
+
+			timestamp = (createdTimestamp != null ? createdTimestamp.getTime() : now);
+		}
+
+		long idle = Math.max(now - timestamp, 0L);
+
+		double count = model.getAccessCount();
+
+		if(this.accessHalfLife <= 0L){
+			return count;
+		}
+
+		return count * Math.pow(0.5d, (double)idle / (double)this.accessHalfLife);
+	}
+
+	public boolean isLazy(){
+		return this.lazy;
+	}
+
+	public long getHeapBudget(){
+		return this.heapBudget;
+	}
+
+	public long getOwnerHeapQuota(){
+		return this.ownerHeapQuota;
 	}
 
 	public Function<Principal, ConcurrentMap<String, Model>> getInitializer(){
@@ -88,4 +409,94 @@ public class ModelRegistry {
 	public void setInitializer(Function<Principal, ConcurrentMap<String, Model>> initializer){
 		this.initializer = Objects.requireNonNull(initializer);
 	}
+
+	static
+	private long getWeight(Model model){
+		Number size = (Number)model.getProperty(Model.PROPERTY_HEAP_SIZE);
+
+		if(size == null){
+			size = (Number)model.getProperty(Model.PROPERTY_FILE_SIZE);
+		}
+
+		return (size != null ? size.longValue() : 0L);
+	}
+
+	/**
+	 * <p>
+	 * Models that share an evaluator (ie. that were loaded from the same PMML document) are charged for it once.
+	 * </p>
+	 */
+	static
+	private long getHeapSize(Collection<Model> models){
+		Set<Object> evaluators = HeapEstimator.newIdentitySet();
+
+		long result = 0L;
+
+		for(Model model : models){
+			long heapSize = getHeapSize(model);
+
+			Evaluator evaluator = model.getMaterializedEvaluator();
+			if(evaluator != null && !evaluators.add(evaluator)){
+				heapSize -= model.getEvaluatorHeapSize();
+			}
+
+			result += Math.max(heapSize, 0L);
+		}
+
+		return result;
+	}
+
+	static
+	private long getHeapSize(Model model){
+		Number size = (Number)model.getProperty(Model.PROPERTY_HEAP_SIZE);
+
+		return (size != null ? size.longValue() : 0L);
+	}
+
+	static
+	private class Candidate {
+
+		private Model model = null;
+
+		private long weight = 0L;
+
+		private double value = 0d;
+
+
+		private Candidate(Model model, long weight, double value){
+			this.model = model;
+			this.weight = weight;
+			this.value = value;
+		}
+	}
+
+	static
+	private class Owner {
+
+		private String name = null;
+
+
+		private Owner(String name){
+			this.name = name;
+		}
+
+		@Override
+		public int hashCode(){
+			return Objects.hashCode(this.name);
+		}
+
+		@Override
+		public boolean equals(Object object){
+
+			if(object instanceof Owner){
+				Owner that = (Owner)object;
+
+				return Objects.equals(this.name, that.name);
+			}
+
+			return false;
+		}
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(ModelRegistry.class);
 }
\ No newline at end of file
@@ -18,16 +18,44 @@
  */
 package org.openscoring.service;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.annotation.Annotation;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import jakarta.annotation.security.RolesAllowed;
@@ -35,7 +63,9 @@ import jakarta.inject.Inject;
 import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.ForbiddenException;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.InternalServerErrorException;
 import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.POST;
@@ -43,13 +73,24 @@ import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriBuilder;
 import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.ContextResolver;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.Providers;
 import org.glassfish.jersey.media.multipart.FormDataParam;
+import org.glassfish.jersey.server.CloseableService;
 import org.jpmml.evaluator.EvaluationException;
 import org.jpmml.evaluator.Evaluator;
 import org.jpmml.evaluator.EvaluatorUtil;
@@ -59,15 +100,26 @@ import org.jpmml.evaluator.InputField;
 import org.openscoring.common.BatchEvaluationRequest;
 import org.openscoring.common.BatchEvaluationResponse;
 import org.openscoring.common.BatchModelResponse;
+import org.openscoring.common.ColumnarEvaluationRequest;
+import org.openscoring.common.ColumnarEvaluationResponse;
+import org.openscoring.common.DeploymentResponse;
 import org.openscoring.common.EvaluationRequest;
 import org.openscoring.common.EvaluationResponse;
+import org.openscoring.common.Headers;
 import org.openscoring.common.ModelResponse;
+import org.openscoring.common.RouteRequest;
+import org.openscoring.common.RouteResponse;
 import org.openscoring.common.SimpleResponse;
 import org.openscoring.common.TableEvaluationRequest;
 import org.openscoring.common.TableEvaluationResponse;
+import org.openscoring.common.providers.ObjectMapperProvider;
 import org.openscoring.service.annotations.Endpoint;
+import org.openscoring.service.providers.CsvUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.supercsv.io.CsvMapReader;
+import org.supercsv.io.CsvMapWriter;
+import org.supercsv.prefs.CsvPreference;
 
 @Path("model")
 @Consumes(MediaType.APPLICATION_JSON)
@@ -80,12 +132,42 @@ public class ModelResource {
 	@Context
 	private UriInfo uriInfo = null;
 
+	@HeaderParam(Headers.MODEL_VERSION)
+	private String version = null;
+
 	private ModelRegistry modelRegistry = null;
 
+	private ModelStore modelStore = null;
+
+	private ModelLoader modelLoader = null;
+
+	private DeploymentExecutor deploymentExecutor = null;
+
+	private ModelWarmer modelWarmer = null;
+
+	private EvaluationExecutor evaluationExecutor = null;
+
+	private EvaluationTracer evaluationTracer = null;
+
+	private ResultCache resultCache = null;
+
+	private MetricRegistry metricRegistry = null;
+
+	private ModelRouter modelRouter = null;
+
 
 	@Inject
-	public ModelResource(ModelRegistry modelRegistry){
+	public ModelResource(ModelRegistry modelRegistry, ModelStore modelStore, ModelLoader modelLoader, DeploymentExecutor deploymentExecutor, ModelWarmer modelWarmer, EvaluationExecutor evaluationExecutor, EvaluationTracer evaluationTracer, ResultCache resultCache, MetricRegistry metricRegistry, ModelRouter modelRouter){
 		this.modelRegistry = modelRegistry;
+		this.modelStore = modelStore;
+		this.modelLoader = modelLoader;
+		this.deploymentExecutor = deploymentExecutor;
+		this.modelWarmer = modelWarmer;
+		this.evaluationExecutor = evaluationExecutor;
+		this.evaluationTracer = evaluationTracer;
+		this.resultCache = resultCache;
+		this.metricRegistry = metricRegistry;
+		this.modelRouter = modelRouter;
 	}
 
 	@GET
@@ -116,7 +198,8 @@ public class ModelResource {
 		Collections.sort(responses, comparator);
 
 		BatchModelResponse batchResponse = new BatchModelResponse()
-			.setResponses(responses);
+			.setResponses(responses)
+			.setHeapSize(this.modelRegistry.getHeapSize(owner));
 
 		return batchResponse;
 	}
@@ -146,7 +229,27 @@ public class ModelResource {
 	@Endpoint (
 		family = Endpoint.Family.MANAGEMENT
 	)
-	public Response deploy(@PathParam("id") ModelRef modelRef, Model model){
+	public Response deploy(@PathParam("id") ModelRef modelRef, @QueryParam("async") boolean async, @QueryParam("modelName") String modelName, @Context Providers providers, @Context HttpHeaders headers, InputStream entityStream){
+
+		if(async){
+			return doDeployAsync(modelRef, modelName, entityStream);
+		}
+
+		MediaType mediaType = headers.getMediaType();
+
+		// Parse the PMML document using the configured model provider
+		MessageBodyReader<Model> modelReader = providers.getMessageBodyReader(Model.class, Model.class, ModelResource.NO_ANNOTATIONS, mediaType);
+
+		Model model;
+
+		try {
+			model = modelReader.readFrom(Model.class, Model.class, ModelResource.NO_ANNOTATIONS, mediaType, headers.getRequestHeaders(), entityStream);
+		} catch(IOException ioe){
+			logger.error("Failed to load the PMML document", ioe);
+
+			throw new BadRequestException(ioe);
+		}
+
 		return doDeploy(modelRef, model);
 	}
 
@@ -164,22 +267,7 @@ public class ModelResource {
 	}
 
 	private Response doDeploy(ModelRef modelRef, Model model){
-		boolean success;
-
-		Model oldModel = this.modelRegistry.get(modelRef);
-		if(oldModel != null){
-			success = this.modelRegistry.replace(modelRef, oldModel, model);
-		} else
-
-		{
-			success = this.modelRegistry.put(modelRef, model);
-		} // End if
-
-		if(!success){
-			logger.error("Concurrent modification");
-
-			throw new InternalServerErrorException();
-		}
+		Model oldModel = putModel(modelRef, model);
 
 		ModelResponse entity = createModelResponse(modelRef.getId(), model, true);
 
@@ -196,308 +284,1357 @@ public class ModelResource {
 		}
 	}
 
-	@GET
-	@Path(ModelRef.PATH_VALUE_ID + "/pmml")
-	@Produces(MediaType.APPLICATION_XML)
-	@RolesAllowed (
-		value = {Roles.ADMIN}
-	)
-	@Endpoint (
-		family = Endpoint.Family.MANAGEMENT
-	)
-	public Model download(@PathParam("id") ModelRef modelRef){
-		Model model = this.modelRegistry.get(modelRef, true);
-		if(model == null){
-			logger.error("Not found");
+	private Response doDeployAsync(ModelRef modelRef, String modelName, InputStream entityStream){
 
-			throw new NotFoundException();
+		// Fail fast, before receiving a possibly large PMML document
+		if(this.deploymentExecutor.isSaturated()){
+			logger.error("Too many concurrent deployments");
+
+			throw new ServiceUnavailableException("Too many concurrent deployments");
 		}
 
-		return model;
-	}
+		File pmmlFile;
 
-	@POST
-	@Path(ModelRef.PATH_VALUE_ID)
-	@Endpoint (
-		family = Endpoint.Family.EVALUATION
-	)
-	public EvaluationResponse evaluate(@PathParam("id") ModelRef modelRef, EvaluationRequest request){
-		List<EvaluationRequest> requests = Collections.singletonList(request);
+		// The entity stream is closed when this method returns
+		try {
+			pmmlFile = File.createTempFile("openscoring-", ".pmml.xml");
+		} catch(IOException ioe){
+			throw new InternalServerErrorException(ioe);
+		}
 
-		List<EvaluationResponse> responses = doEvaluate(modelRef, requests, true);
+		InputStream is = this.modelLoader.limitUpload(entityStream);
 
-		return responses.get(0);
-	}
+		try {
+			Files.copy(is, pmmlFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch(IOException ioe){
+			pmmlFile.delete();
 
-	@POST
-	@Path(ModelRef.PATH_VALUE_ID + "/batch")
-	@Endpoint (
-		family = Endpoint.Family.EVALUATION
-	)
-	public BatchEvaluationResponse evaluateBatch(@PathParam("id") ModelRef modelRef, BatchEvaluationRequest batchRequest){
-		List<EvaluationRequest> requests = batchRequest.getRequests();
+			if(is instanceof LimitedInputStream && ((LimitedInputStream)is).isExceeded()){
+				logger.error("The PMML document is too large", ioe);
 
-		List<EvaluationResponse> responses = doEvaluate(modelRef, requests, false);
+				throw new WebApplicationException("The PMML document exceeds " + this.modelLoader.getMaxUploadSize() + " bytes", Response.Status.REQUEST_ENTITY_TOO_LARGE);
+			}
 
-		BatchEvaluationResponse batchResponse = new BatchEvaluationResponse(batchRequest.getId())
-			.setResponses(responses);
+			logger.error("Failed to receive the PMML document", ioe);
 
-		return batchResponse;
-	}
+			throw new BadRequestException(ioe);
+		}
 
-	@POST
-	@Path(ModelRef.PATH_VALUE_ID + "/csv")
-	@Consumes({"application/csv", "text/csv", MediaType.TEXT_PLAIN})
-	@Produces(MediaType.TEXT_PLAIN)
-	@Endpoint (
-		family = Endpoint.Family.EVALUATION
-	)
-	public TableEvaluationResponse evaluateCsv(@PathParam("id") ModelRef modelRef, TableEvaluationRequest tableRequest){
-		return doEvaluateCsv(modelRef, tableRequest);
-	}
+		DeploymentExecutor.Deployment deployment;
 
-	@POST
-	@Path(ModelRef.PATH_VALUE_ID + "/csv")
-	@Consumes(MediaType.MULTIPART_FORM_DATA)
-	@Produces(MediaType.TEXT_PLAIN)
-	@Endpoint (
-		family = Endpoint.Family.EVALUATION
-	)
-	public TableEvaluationResponse evaluateCsvForm(@PathParam("id") ModelRef modelRef, @FormDataParam("csv") TableEvaluationRequest tableRequest){
-		return doEvaluateCsv(modelRef, tableRequest);
-	}
+		try {
+			deployment = this.deploymentExecutor.submit(modelRef, () -> {
+				Model model;
 
-	private TableEvaluationResponse doEvaluateCsv(ModelRef modelRef, TableEvaluationRequest tableRequest){
-		List<EvaluationRequest> requests = tableRequest.getRequests();
+				try(InputStream is = new FileInputStream(pmmlFile)){
+					model = this.modelLoader.load(is, modelName);
+				} finally {
+					pmmlFile.delete();
+				}
 
-		List<EvaluationResponse> responses = doEvaluate(modelRef, requests, true);
+				putModel(modelRef, model);
 
-		List<String> columns = new ArrayList<>();
+				return model;
+			});
+		} catch(RejectedExecutionException ree){
+			logger.error("Too many concurrent deployments", ree);
 
-		String idColumn = tableRequest.getIdColumn();
-		if(idColumn != null){
-			columns.add(idColumn);
+			pmmlFile.delete();
+
+			throw new ServiceUnavailableException("Too many concurrent deployments");
 		}
 
-		responses:
-		for(EvaluationResponse response : responses){
-			String message = response.getMessage();
+		DeploymentResponse entity = createDeploymentResponse(modelRef.getId(), deployment);
 
-			if(message != null){
-				continue;
-			}
+		UriBuilder uriBuilder = (this.uriInfo.getBaseUriBuilder()).path(ModelResource.class).path(modelRef.getId()).path("deployment");
 
-			Map<String, ?> results = response.getResults();
+		URI uri = uriBuilder.build();
 
-			columns.addAll(results.keySet());
+		return (Response.accepted(entity).location(uri)).build();
+	}
 
-			break responses;
-		}
+	private Model putModel(ModelRef modelRef, Model model){
+		// Traffic must only ever reach a warmed up model
+		this.modelWarmer.warmUp(model);
 
-		TableEvaluationResponse tableResponse = new TableEvaluationResponse()
-			.setFormat(tableRequest.getFormat())
-			.setColumns(columns)
-			.setResponses(responses);
+		// Measured after warm-up, so that lazily initialized evaluator state is included
+		model.estimateHeapSize();
 
-		return tableResponse;
-	}
+		// Concurrent deployments of the same model are applied one after another
+		Lock lock = this.modelRegistry.getLock(modelRef);
 
-	private List<EvaluationResponse> doEvaluate(ModelRef modelRef, List<EvaluationRequest> requests, boolean allOrNothing){
-		Model model = this.modelRegistry.get(modelRef, true);
-		if(model == null){
-			logger.error("Not found");
+		lock.lock();
 
-			throw new NotFoundException();
-		}
+		try {
 
-		List<EvaluationResponse> responses = new ArrayList<>();
+			if(!this.modelRegistry.checkQuota(modelRef, model)){
+				logger.error("Heap quota exceeded");
 
-		try {
-			Evaluator evaluator = model.getEvaluator();
+				model.release();
 
-			if(evaluator instanceof HasGroupFields){
-				HasGroupFields hasGroupFields = (HasGroupFields)evaluator;
+				throw new ForbiddenException("Heap quota exceeded");
+			}
 
-				List<InputField> groupFields = hasGroupFields.getGroupFields();
-				if(groupFields.size() == 1){
-					InputField groupField = groupFields.get(0);
+			ModelStore.Entry entry;
 
-					requests = aggregateRequests(groupField.getName(), requests);
-				} else
+			// The model is stored before it is deployed, so that a failure leaves the current model in place
+			try {
+				entry = this.modelStore.store(modelRef, model);
+			} catch(IOException ioe){
+				logger.error("Failed to store the model", ioe);
 
-				if(groupFields.size() > 1){
-					throw new EvaluationException("Too many group fields");
+				model.release();
+
+				throw new InternalServerErrorException(ioe);
+			}
+
+			if(entry != null){
+				model.setStoreEntry(entry);
+
+				// Only stored models can be materialized again
+				if(this.modelRegistry.isLazy()){
+					model.setEvaluatorLoader(this.modelLoader.createEvaluatorLoader(entry));
 				}
 			}
 
-			for(EvaluationRequest request : requests){
-				EvaluationResponse response;
+			Model oldModel = this.modelRegistry.swap(modelRef, model);
+			if(oldModel != null){
+				removeResultCacheStats(oldModel);
+			} // End if
 
-				try {
-					response = evaluate(evaluator, request);
-				} catch(Exception e){
+			if(this.modelRegistry.isLazy() && entry != null){
+				this.modelRegistry.trim(model);
+			}
 
-					if(allOrNothing){
-						throw e;
-					}
+			return oldModel;
+		} finally {
+			lock.unlock();
+		}
+	}
 
-					response = new EvaluationResponse(request.getId());
-					response.setMessage(e.toString());
-				}
+	@GET
+	@Path(ModelRef.PATH_VALUE_ID + "/deployment")
+	@RolesAllowed (
+		value = {Roles.ADMIN}
+	)
+	@Endpoint (
+		family = Endpoint.Family.MANAGEMENT
+	)
+	public DeploymentResponse queryDeployment(@PathParam("id") ModelRef modelRef){
+		DeploymentExecutor.Deployment deployment = this.deploymentExecutor.getDeployment(modelRef);
+		if(deployment == null){
+			logger.error("Not found");
 
-				responses.add(response);
-			}
-		} catch(Exception e){
-			logger.error("Failed to evaluate", e);
+			throw new NotFoundException();
+		}
 
-			throw new BadRequestException(e);
+		return createDeploymentResponse(modelRef.getId(), deployment);
+	}
+
+	@GET
+	@Path(ModelRef.PATH_VALUE_ID + "/route")
+	@Endpoint (
+		family = Endpoint.Family.INFORMATION
+	)
+	public RouteResponse queryRoute(@PathParam("id") ModelRef modelRef){
+		ModelRouter.Route route = this.modelRouter.getRoute(modelRef);
+		if(route == null){
+			logger.error("Not found");
+
+			throw new NotFoundException();
 		}
 
-		return responses;
+		return createRouteResponse(modelRef.getId(), route);
 	}
 
-	@DELETE
-	@Path(ModelRef.PATH_VALUE_ID)
+	@PUT
+	@Path(ModelRef.PATH_VALUE_ID + "/route")
 	@RolesAllowed (
 		value = {Roles.ADMIN}
 	)
 	@Endpoint (
 		family = Endpoint.Family.MANAGEMENT
 	)
-	public SimpleResponse undeploy(@PathParam("id") ModelRef modelRef){
-		return doUndeploy(modelRef);
+	public RouteResponse putRoute(@PathParam("id") ModelRef modelRef, RouteRequest routeRequest){
+		Double shadowRate = routeRequest.getShadowRate();
+
+		ModelRouter.Route route;
+
+		try {
+			route = new ModelRouter.Route(routeRequest.getWeights(), routeRequest.getShadow(), (shadowRate != null ? shadowRate : 0d));
+		} catch(IllegalArgumentException iae){
+			logger.error("Invalid route", iae);
+
+			throw new BadRequestException(iae);
+		}
+
+		this.modelRouter.putRoute(modelRef, route);
+
+		return createRouteResponse(modelRef.getId(), route);
 	}
 
 	@DELETE
-	@Path(ModelRef.PATH_VALUE_ID)
-	@Consumes({MediaType.APPLICATION_FORM_URLENCODED, MediaType.MULTIPART_FORM_DATA})
+	@Path(ModelRef.PATH_VALUE_ID + "/route")
 	@RolesAllowed (
 		value = {Roles.ADMIN}
 	)
 	@Endpoint (
 		family = Endpoint.Family.MANAGEMENT
 	)
-	public SimpleResponse undeployForm(@PathParam("id") ModelRef modelRef){
-		return doUndeploy(modelRef);
-	}
-
-	private SimpleResponse doUndeploy(ModelRef modelRef){
-		Model model = this.modelRegistry.get(modelRef);
-		if(model == null){
+	public SimpleResponse removeRoute(@PathParam("id") ModelRef modelRef){
+		ModelRouter.Route route = this.modelRouter.removeRoute(modelRef);
+		if(route == null){
 			logger.error("Not found");
 
 			throw new NotFoundException();
 		}
 
-		boolean success = this.modelRegistry.remove(modelRef, model);
-		if(!success){
-			logger.error("Concurrent modification");
-
-			throw new InternalServerErrorException();
-		}
-
 		SimpleResponse response = new SimpleResponse();
 
 		return response;
 	}
 
-	static
-	protected List<EvaluationRequest> aggregateRequests(String groupName, List<EvaluationRequest> requests){
-		Map<Object, ListMultimap<String, Object>> groupedArguments = new LinkedHashMap<>();
+	@GET
+	@Path(ModelRef.PATH_VALUE_ID + "/heap")
+	@RolesAllowed (
+		value = {Roles.ADMIN}
+	)
+	@Endpoint (
+		family = Endpoint.Family.MANAGEMENT
+	)
+	public ModelResponse estimateHeapSize(@PathParam("id") ModelRef modelRef){
+		Model model = acquireModel(modelRef);
 
-		for(EvaluationRequest request : requests){
-			Map<String, ?> requestArguments = request.getArguments();
+		try {
+			model.estimateHeapSize();
 
-			Object value = requestArguments.get(groupName);
-			if(value == null && !requestArguments.containsKey(groupName)){
-				logger.warn("Evaluation request {} does not specify a group field {}", request.getId(), groupName);
-			}
+			return createModelResponse(modelRef.getId(), model, true);
+		} finally {
+			model.release();
+		}
+	}
 
-			ListMultimap<String, Object> groupedArgumentMap = groupedArguments.get(value);
-			if(groupedArgumentMap == null){
-				groupedArgumentMap = ArrayListMultimap.create();
+	@GET
+	@Path(ModelRef.PATH_VALUE_ID + "/pmml")
+	@Produces(MediaType.APPLICATION_XML)
+	@RolesAllowed (
+		value = {Roles.ADMIN}
+	)
+	@Endpoint (
+		family = Endpoint.Family.MANAGEMENT
+	)
+	public Response download(@PathParam("id") ModelRef modelRef, @Context Request request, @Context CloseableService closeableService, @HeaderParam(ModelResource.HEADER_RANGE) String range, @HeaderParam(ModelResource.HEADER_IF_RANGE) String ifRange){
+		Model model = acquireModel(modelRef);
 
-				groupedArguments.put(value, groupedArgumentMap);
-			}
+		try {
+			ModelStore.Entry entry = model.getStoreEntry();
 
-			Collection<? extends Map.Entry<String, ?>> entries = requestArguments.entrySet();
-			for(Map.Entry<String, ?> entry : entries){
-				groupedArgumentMap.put(entry.getKey(), entry.getValue());
-			}
-		}
+			FileChannel channel = null;
 
-		// Only continue with request modification if there is a clear need to do so
-		if(groupedArguments.size() == requests.size()){
-			return requests;
-		}
+			// The channel is opened before the entity tag is taken from the same store entry.
+			// Store entries are immutable, and every stored PMML file has a unique name, so the entity tag always describes the bytes being sent
+			if(entry != null && entry.getFile() != null && entry.getFileChecksum() != null){
 
-		List<EvaluationRequest> resultRequests = new ArrayList<>();
+				try {
+					channel = FileChannel.open(entry.getFile(), StandardOpenOption.READ);
+				} catch(NoSuchFileException nsfe){
+					// Deleted by a concurrent redeployment
+				} catch(IOException ioe){
+					logger.error("Failed to open the PMML document", ioe);
 
-		Collection<Map.Entry<Object, ListMultimap<String, Object>>> entries = groupedArguments.entrySet();
-		for(Map.Entry<Object, ListMultimap<String, Object>> entry : entries){
-			Map<String, Object> arguments = new LinkedHashMap<>();
-			arguments.putAll((entry.getValue()).asMap());
+					throw new InternalServerErrorException(ioe);
+				}
+			} // End if
 
-			// The value of the "group by" column is a single Object, not a Collection (ie. java.util.List) of Objects
-			arguments.put(groupName, entry.getKey());
+			if(channel != null){
+				// Closed after the request has been processed, whether or not the streaming output is ever written
+				closeableService.add(channel);
 
-			EvaluationRequest resultRequest = new EvaluationRequest()
-				.setArguments(arguments);
+				EntityTag entityTag = new EntityTag(entry.getFileChecksum());
 
-			resultRequests.add(resultRequest);
-		}
+				Response.ResponseBuilder responseBuilder = request.evaluatePreconditions(entityTag);
+				if(responseBuilder != null){
+					return (responseBuilder.tag(entityTag)).build();
+				}
 
-		return resultRequests;
+				// A stale If-Range precondition means that the whole PMML document is sent
+				boolean ranged = (range != null) && (ifRange == null || ifRange.equals(entityTag.toString()));
+
+				return createPmmlFileResponse(channel, entityTag, ranged ? range : null);
+			}
+
+			// A re-created PMML document is not guaranteed to be byte-for-byte identical between requests,
+			// so it is sent without an entity tag, and without range support.
+			// The PMML document is written after this method has returned, so the written model must not be released
+			return (Response.ok().entity(new Model(model))).build();
+		} finally {
+			model.release();
+		}
 	}
 
-	static
-	protected EvaluationResponse evaluate(Evaluator evaluator, EvaluationRequest request){
-		logger.info("Received {}", request);
+	private Response createPmmlFileResponse(FileChannel channel, EntityTag entityTag, String range){
+		long size;
 
-		Map<String, ?> requestArguments = request.getArguments();
+		try {
+			size = channel.size();
+		} catch(IOException ioe){
+			throw new InternalServerErrorException(ioe);
+		}
 
-		EvaluationResponse response = new EvaluationResponse(request.getId());
+		long[] bounds = (range != null ? parseRange(range, size) : null);
 
-		Map<String, FieldValue> arguments = new LinkedHashMap<>();
+		if(bounds != null && bounds.length == 0){
+			return (Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE).header(ModelResource.HEADER_CONTENT_RANGE, "bytes */" + size)).build();
+		}
 
-		List<InputField> inputFields = evaluator.getInputFields();
-		for(InputField inputField : inputFields){
-			String inputName = inputField.getName();
+		long start = (bounds != null ? bounds[0] : 0L);
+		long length = (bounds != null ? (bounds[1] - bounds[0] + 1) : size);
 
-			Object value = requestArguments.get(inputName);
-			if(value == null && !requestArguments.containsKey(inputName)){
-				logger.warn("Evaluation request {} does not specify an input field {}", request.getId(), inputName);
-			}
+		StreamingOutput output = new StreamingOutput(){
 
-			FieldValue inputValue = inputField.prepare(value);
+			@Override
+			public void write(OutputStream os) throws IOException {
 
-			arguments.put(inputName, inputValue);
-		}
+				WritableByteChannel targetChannel = Channels.newChannel(os);
 
-		logger.debug("Evaluation request {} has prepared arguments: {}", request.getId(), arguments);
+				long position = start;
+				long remaining = length;
 
-		Map<String, ?> results = evaluator.evaluate(arguments);
+				while(remaining > 0){
+					long count = channel.transferTo(position, remaining, targetChannel);
+
+					position += count;
+					remaining -= count;
+				}
+			}
+		};
+
+		Response.ResponseBuilder responseBuilder;
+
+		if(bounds != null){
+			responseBuilder = Response.status(Response.Status.PARTIAL_CONTENT)
+				.header(ModelResource.HEADER_CONTENT_RANGE, "bytes " + bounds[0] + "-" + bounds[1] + "/" + size);
+		} else
+
+		{
+			responseBuilder = Response.ok();
+		}
+
+		responseBuilder = responseBuilder
+			.entity(output)
+			.type(MediaType.APPLICATION_XML_TYPE.withCharset("UTF-8"))
+			.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=model.pmml.xml")
+			.header(ModelResource.HEADER_ACCEPT_RANGES, "bytes")
+			.tag(entityTag);
+
+		return responseBuilder.build();
+	}
+
+	@POST
+	@Path(ModelRef.PATH_VALUE_ID)
+	@Consumes({MediaType.APPLICATION_JSON, ModelResource.APPLICATION_CBOR, ModelResource.APPLICATION_SMILE})
+	@Produces({MediaType.APPLICATION_JSON, ModelResource.APPLICATION_CBOR, ModelResource.APPLICATION_SMILE})
+	@Endpoint (
+		family = Endpoint.Family.EVALUATION
+	)
+	public EvaluationResponse evaluate(@PathParam("id") ModelRef modelRef, EvaluationRequest request){
+		List<EvaluationRequest> requests = Collections.singletonList(request);
+
+		List<EvaluationResponse> responses = doEvaluate(modelRef, requests, true);
+
+		return responses.get(0);
+	}
+
+	@POST
+	@Path(ModelRef.PATH_VALUE_ID + "/batch")
+	@Consumes({MediaType.APPLICATION_JSON, ModelResource.APPLICATION_CBOR, ModelResource.APPLICATION_SMILE})
+	@Produces({MediaType.APPLICATION_JSON, ModelResource.APPLICATION_CBOR, ModelResource.APPLICATION_SMILE})
+	@Endpoint (
+		family = Endpoint.Family.EVALUATION
+	)
+	public BatchEvaluationResponse evaluateBatch(@PathParam("id") ModelRef modelRef, BatchEvaluationRequest batchRequest){
+		List<EvaluationRequest> requests = batchRequest.getRequests();
+
+		List<EvaluationResponse> responses = doEvaluate(modelRef, requests, false);
+
+		BatchEvaluationResponse batchResponse = new BatchEvaluationResponse(batchRequest.getId())
+			.setResponses(responses);
+
+		return batchResponse;
+	}
+
+	@POST
+	@Path(ModelRef.PATH_VALUE_ID + "/batch")
+	@Consumes(ModelResource.APPLICATION_NDJSON)
+	@Produces(ModelResource.APPLICATION_NDJSON)
+	@Endpoint (
+		family = Endpoint.Family.EVALUATION
+	)
+	public Response evaluateBatchStream(@PathParam("id") ModelRef routeRef, @Context Providers providers, @Context CloseableService closeableService, InputStream entityStream){
+		ModelRef modelRef = resolveRoute(routeRef);
+
+		Model model = acquireModel(modelRef);
+
+		// Released after the request has been processed, whether or not the streaming output is ever written
+		closeableService.add(model::release);
+
+		ResultCache resultCache = getResultCache(modelRef);
+
+		Evaluator evaluator = model.getEvaluator();
+
+		// Aggregation requires the complete batch
+		if(hasGroupFields(evaluator)){
+			logger.error("Not supported");
+
+			throw new BadRequestException("Models with group fields cannot be evaluated in streaming mode");
+		}
+
+		ContextResolver<ObjectMapper> objectMapperResolver = providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE);
+
+		ObjectMapper objectMapper = objectMapperResolver.getContext(EvaluationRequest.class);
+
+		ObjectReader requestReader;
+		ObjectWriter responseWriter;
+
+		if(objectMapperResolver instanceof ObjectMapperProvider){
+			ObjectMapperProvider objectMapperProvider = (ObjectMapperProvider)objectMapperResolver;
+
+			requestReader = objectMapperProvider.getReader(EvaluationRequest.class);
+			responseWriter = objectMapperProvider.getWriter(EvaluationResponse.class);
+		} else
+
+		{
+			requestReader = objectMapper.readerFor(EvaluationRequest.class);
+			responseWriter = objectMapper.writerFor(EvaluationResponse.class);
+		}
+
+		MappingIterator<EvaluationRequest> requestIterator;
+
+		try {
+			requestIterator = requestReader.readValues(entityStream);
+		} catch(Exception e){
+			logger.error("Failed to load the NDJSON document", e);
+
+			throw new BadRequestException(e);
+		}
+
+		// One JSON object per line
+		ObjectWriter lineWriter = responseWriter
+			.without(SerializationFeature.INDENT_OUTPUT)
+			.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+			.withRootValueSeparator("");
+
+		int chunkSize = this.evaluationExecutor.getChunkSize();
+
+		MetricRegistry.Histogram prepareHistogram = getPhaseHistogram(modelRef, MetricRegistry.PHASE_PREPARE);
+		MetricRegistry.Histogram evaluateHistogram = getPhaseHistogram(modelRef, MetricRegistry.PHASE_EVALUATE);
+
+		StreamingOutput output = new StreamingOutput(){
+
+			@Override
+			public void write(OutputStream os) throws IOException {
+				JsonGenerator generator = objectMapper.getFactory().createGenerator(os);
+
+				int count = 0;
+
+				while(true){
+					List<EvaluationRequest> requests;
+
+					try {
+						requests = readRequests(requestIterator, chunkSize);
+					} catch(IOException ioe){
+						logger.error("Failed to load the NDJSON document", ioe);
+
+						// Every chunk is flushed, so the response has been committed and the status code can no longer be changed
+						if(count > 0){
+							writeErrorRecord(lineWriter, generator, ioe);
+
+							break;
+						}
+
+						throw new BadRequestException(ioe);
+					}
+
+					if(requests.isEmpty()){
+						break;
+					}
+
+					List<EvaluationResponse> responses;
+
+					try {
+						responses = ModelResource.this.evaluationExecutor.execute(requests, request -> evaluate(model, request, resultCache, prepareHistogram, evaluateHistogram), false);
+					} catch(Exception e){
+						logger.error("Failed to evaluate", e);
+
+						if(count > 0){
+							writeErrorRecord(lineWriter, generator, e);
+
+							break;
+						}
+
+						throw new InternalServerErrorException(e);
+					}
+
+					count += requests.size();
+
+					ModelResource.this.evaluationTracer.trace(modelRef, requests, responses);
+
+					for(EvaluationResponse response : responses){
+						lineWriter.writeValue(generator, response);
+
+						generator.writeRaw('\n');
+					}
+
+					generator.flush();
+				}
+
+				generator.flush();
+
+				observeBatchSize(modelRef, count);
+			}
+		};
+
+		return Response.ok(output, ModelResource.APPLICATION_NDJSON)
+			.build();
+	}
+
+	@POST
+	@Path(ModelRef.PATH_VALUE_ID + "/columnar")
+	@Consumes({MediaType.APPLICATION_JSON, ModelResource.APPLICATION_CBOR, ModelResource.APPLICATION_SMILE})
+	@Produces({MediaType.APPLICATION_JSON, ModelResource.APPLICATION_CBOR, ModelResource.APPLICATION_SMILE})
+	@Endpoint (
+		family = Endpoint.Family.EVALUATION
+	)
+	public ColumnarEvaluationResponse evaluateColumnar(@PathParam("id") ModelRef routeRef, ColumnarEvaluationRequest columnarRequest){
+		ModelRef modelRef = resolveRoute(routeRef);
+
+		Model model = acquireModel(modelRef);
+
+		try {
+			ResultCache resultCache = getResultCache(modelRef);
+
+			Evaluator evaluator = model.getEvaluator();
+
+			// Aggregation is defined in terms of rows
+			if(hasGroupFields(evaluator)){
+				logger.error("Not supported");
+
+				throw new BadRequestException("Models with group fields cannot be evaluated in columnar mode");
+			}
+
+			ArgumentBinder argumentBinder = model.getArgumentBinder();
+
+			int rowCount;
+
+			List<?>[] columns;
+
+			try {
+				rowCount = getRowCount(columnarRequest);
+
+				// Bind columns to input fields once per batch
+				columns = argumentBinder.selectColumns(columnarRequest);
+			} catch(Exception e){
+				logger.error("Invalid columnar evaluation request", e);
+
+				throw new BadRequestException(e);
+			}
+
+			List<Integer> rows = new ArrayList<>(rowCount);
+
+			for(int row = 0; row < rowCount; row++){
+				rows.add(row);
+			}
+
+			observeBatchSize(modelRef, rowCount);
+
+			MetricRegistry.Histogram prepareHistogram = getPhaseHistogram(modelRef, MetricRegistry.PHASE_PREPARE);
+			MetricRegistry.Histogram evaluateHistogram = getPhaseHistogram(modelRef, MetricRegistry.PHASE_EVALUATE);
+
+			List<Map<String, ?>> results;
+
+			try {
+				results = this.evaluationExecutor.execute(rows, row -> {
+					long start = System.nanoTime();
+
+					ArgumentBinder.ArgumentMap arguments = argumentBinder.bind(columns, row);
+
+					long prepared = observe(prepareHistogram, start);
+
+					Map<String, ?> rowResults = evaluate(model, arguments, resultCache);
+
+					observe(evaluateHistogram, prepared);
+
+					return rowResults;
+				}, null);
+			} catch(Exception e){
+				logger.error("Failed to evaluate", e);
+
+				throw new BadRequestException(e);
+			}
+
+			ColumnarEvaluationResponse columnarResponse = new ColumnarEvaluationResponse(columnarRequest.getId())
+				.setRowIds(columnarRequest.getRowIds())
+				.setColumns(createResultColumns(results));
+
+			return columnarResponse;
+		} finally {
+			model.release();
+		}
+	}
+
+	@POST
+	@Path(ModelRef.PATH_VALUE_ID + "/csv")
+	@Consumes({"application/csv", "text/csv", MediaType.TEXT_PLAIN})
+	@Produces(MediaType.TEXT_PLAIN)
+	@Endpoint (
+		family = Endpoint.Family.EVALUATION
+	)
+	public TableEvaluationResponse evaluateCsv(@PathParam("id") ModelRef modelRef, TableEvaluationRequest tableRequest){
+		return doEvaluateCsv(modelRef, tableRequest);
+	}
+
+	@POST
+	@Path(ModelRef.PATH_VALUE_ID + "/csv")
+	@Consumes(MediaType.MULTIPART_FORM_DATA)
+	@Produces(MediaType.TEXT_PLAIN)
+	@Endpoint (
+		family = Endpoint.Family.EVALUATION
+	)
+	public TableEvaluationResponse evaluateCsvForm(@PathParam("id") ModelRef modelRef, @FormDataParam("csv") TableEvaluationRequest tableRequest){
+		return doEvaluateCsv(modelRef, tableRequest);
+	}
+
+	@POST
+	@Path(ModelRef.PATH_VALUE_ID + "/csv/stream")
+	@Consumes({"application/csv", "text/csv", MediaType.TEXT_PLAIN})
+	@Produces(MediaType.TEXT_PLAIN)
+	@Endpoint (
+		family = Endpoint.Family.EVALUATION
+	)
+	public Response evaluateCsvStream(@PathParam("id") ModelRef routeRef, @QueryParam("delimiterChar") String delimiterChar, @QueryParam("quoteChar") String quoteChar, @Context HttpHeaders httpHeaders, @Context CloseableService closeableService, InputStream entityStream){
+		ModelRef modelRef = resolveRoute(routeRef);
+
+		Model model = acquireModel(modelRef);
+
+		// Released after the request has been processed, whether or not the streaming output is ever written
+		closeableService.add(model::release);
+
+		ResultCache resultCache = getResultCache(modelRef);
+
+		Evaluator evaluator = model.getEvaluator();
+
+		// Aggregation requires the complete data table
+		if(hasGroupFields(evaluator)){
+			logger.error("Not supported");
+
+			throw new BadRequestException("Models with group fields cannot be evaluated in streaming mode");
+		}
+
+		MediaType mediaType = httpHeaders.getMediaType();
+
+		String charset = (mediaType != null ? mediaType.getParameters().get(MediaType.CHARSET_PARAMETER) : null);
+		if(charset == null){
+			charset = "UTF-8";
+		}
+
+		CsvPreference format;
+
+		CsvMapReader parser;
+
+		TableEvaluationRequest tableRequest;
+
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(entityStream, charset));
+
+			format = CsvUtil.getFormat(reader, delimiterChar, quoteChar);
+
+			parser = new CsvMapReader(reader, format);
+
+			tableRequest = CsvUtil.readHeader(parser);
+		} catch(Exception e){
+			logger.error("Failed to load the CSV document", e);
+
+			throw new BadRequestException(e);
+		}
+
+		String idColumn = tableRequest.getIdColumn();
+
+		int chunkSize = this.evaluationExecutor.getChunkSize();
+
+		String outputCharset = charset;
+
+		MetricRegistry.Histogram prepareHistogram = getPhaseHistogram(modelRef, MetricRegistry.PHASE_PREPARE);
+		MetricRegistry.Histogram evaluateHistogram = getPhaseHistogram(modelRef, MetricRegistry.PHASE_EVALUATE);
+
+		StreamingOutput output = new StreamingOutput(){
+
+			@Override
+			public void write(OutputStream os) throws IOException {
+				BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, outputCharset));
+
+				// The parser was opened before the response, but it is used (and therefore closed) here
+				try(CsvMapReader csvParser = parser; CsvMapWriter formatter = new CsvMapWriter(writer, format)){
+					TableEvaluationResponse tableResponse = null;
+
+					int count = 0;
+
+					while(true){
+						List<EvaluationRequest> requests = CsvUtil.readRequests(csvParser, tableRequest, chunkSize);
+
+						count += requests.size();
+
+						List<EvaluationResponse> responses;
+
+						try {
+							responses = ModelResource.this.evaluationExecutor.execute(requests, request -> evaluate(model, request, resultCache, prepareHistogram, evaluateHistogram), true);
+						} catch(Exception e){
+							logger.error("Failed to evaluate", e);
+
+							// If some rows have already been flushed, then the response is committed, and the client observes a truncated response body
+							throw new BadRequestException(e);
+						}
+
+						ModelResource.this.evaluationTracer.trace(modelRef, requests, responses);
+
+						// The header row is derived from the first chunk
+						if(tableResponse == null){
+							tableResponse = new TableEvaluationResponse()
+								.setColumns(createColumns(idColumn, responses));
+
+							CsvUtil.writeHeader(formatter, tableResponse);
+						} // End if
+
+						if(requests.isEmpty()){
+							break;
+						}
+
+						CsvUtil.writeResponses(formatter, tableResponse, responses);
+
+						formatter.flush();
+					}
+
+					formatter.flush();
+
+					observeBatchSize(modelRef, count);
+				}
+			}
+		};
+
+		return Response.ok(output, MediaType.TEXT_PLAIN_TYPE.withCharset(charset))
+			.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=results.csv")
+			.build();
+	}
+
+	private TableEvaluationResponse doEvaluateCsv(ModelRef modelRef, TableEvaluationRequest tableRequest){
+		List<EvaluationRequest> requests = tableRequest.getRequests();
+
+		List<EvaluationResponse> responses = doEvaluate(modelRef, requests, true);
+
+		List<String> columns = createColumns(tableRequest.getIdColumn(), responses);
+
+		TableEvaluationResponse tableResponse = new TableEvaluationResponse()
+			.setFormat(tableRequest.getFormat())
+			.setColumns(columns)
+			.setResponses(responses);
+
+		return tableResponse;
+	}
+
+	private List<EvaluationResponse> doEvaluate(ModelRef routeRef, List<EvaluationRequest> requests, boolean allOrNothing){
+		ModelRef modelRef = resolveRoute(routeRef);
+
+		Model model = acquireModel(modelRef);
+
+		try {
+			ResultCache resultCache = getResultCache(modelRef);
+
+			List<EvaluationResponse> responses;
+
+			try {
+				Evaluator evaluator = model.getEvaluator();
+
+				if(evaluator instanceof HasGroupFields){
+					HasGroupFields hasGroupFields = (HasGroupFields)evaluator;
+
+					List<InputField> groupFields = hasGroupFields.getGroupFields();
+					if(groupFields.size() == 1){
+						InputField groupField = groupFields.get(0);
+
+						requests = aggregateRequests(groupField.getName(), requests);
+					} else
+
+					if(groupFields.size() > 1){
+						throw new EvaluationException("Too many group fields");
+					}
+				}
+
+				observeBatchSize(modelRef, requests.size());
+
+				MetricRegistry.Histogram prepareHistogram = getPhaseHistogram(modelRef, MetricRegistry.PHASE_PREPARE);
+				MetricRegistry.Histogram evaluateHistogram = getPhaseHistogram(modelRef, MetricRegistry.PHASE_EVALUATE);
+
+				responses = this.evaluationExecutor.execute(requests, request -> evaluate(model, request, resultCache, prepareHistogram, evaluateHistogram), allOrNothing);
+
+				this.evaluationTracer.trace(modelRef, requests, responses);
+
+				this.modelRouter.shadow(routeRef, requests, responses);
+			} catch(Exception e){
+				logger.error("Failed to evaluate", e);
+
+				throw new BadRequestException(e);
+			}
+
+			return responses;
+		} finally {
+			model.release();
+		}
+	}
+
+	@DELETE
+	@Path(ModelRef.PATH_VALUE_ID)
+	@RolesAllowed (
+		value = {Roles.ADMIN}
+	)
+	@Endpoint (
+		family = Endpoint.Family.MANAGEMENT
+	)
+	public SimpleResponse undeploy(@PathParam("id") ModelRef modelRef){
+		return doUndeploy(modelRef);
+	}
+
+	@DELETE
+	@Path(ModelRef.PATH_VALUE_ID)
+	@Consumes({MediaType.APPLICATION_FORM_URLENCODED, MediaType.MULTIPART_FORM_DATA})
+	@RolesAllowed (
+		value = {Roles.ADMIN}
+	)
+	@Endpoint (
+		family = Endpoint.Family.MANAGEMENT
+	)
+	public SimpleResponse undeployForm(@PathParam("id") ModelRef modelRef){
+		return doUndeploy(modelRef);
+	}
+
+	private SimpleResponse doUndeploy(ModelRef modelRef){
+		Lock lock = this.modelRegistry.getLock(modelRef);
+
+		lock.lock();
+
+		try {
+			Model model = this.modelRegistry.get(modelRef);
+			if(model == null){
+				logger.error("Not found");
+
+				throw new NotFoundException();
+			}
+
+			boolean success = this.modelRegistry.remove(modelRef, model);
+			if(!success){
+				logger.error("Concurrent modification");
+
+				throw new InternalServerErrorException();
+			}
+
+			this.metricRegistry.removeModel(modelRef);
+
+			removeResultCacheStats(model);
+
+			try {
+				this.modelStore.delete(modelRef);
+			} catch(IOException ioe){
+				logger.error("Failed to delete the stored model", ioe);
+
+				throw new InternalServerErrorException(ioe);
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		SimpleResponse response = new SimpleResponse();
+
+		return response;
+	}
+
+	static
+	protected List<EvaluationRequest> aggregateRequests(String groupName, List<EvaluationRequest> requests){
+		Map<Object, ListMultimap<String, Object>> groupedArguments = new LinkedHashMap<>();
+
+		for(EvaluationRequest request : requests){
+			Map<String, ?> requestArguments = request.getArguments();
+
+			Object value = requestArguments.get(groupName);
+			if(value == null && !requestArguments.containsKey(groupName)){
+				logger.warn("Evaluation request {} does not specify a group field {}", request.getId(), groupName);
+			}
+
+			ListMultimap<String, Object> groupedArgumentMap = groupedArguments.get(value);
+			if(groupedArgumentMap == null){
+				groupedArgumentMap = ArrayListMultimap.create();
+
+				groupedArguments.put(value, groupedArgumentMap);
+			}
+
+			Collection<? extends Map.Entry<String, ?>> entries = requestArguments.entrySet();
+			for(Map.Entry<String, ?> entry : entries){
+				groupedArgumentMap.put(entry.getKey(), entry.getValue());
+			}
+		}
+
+		// Only continue with request modification if there is a clear need to do so
+		if(groupedArguments.size() == requests.size()){
+			return requests;
+		}
+
+		List<EvaluationRequest> resultRequests = new ArrayList<>();
+
+		Collection<Map.Entry<Object, ListMultimap<String, Object>>> entries = groupedArguments.entrySet();
+		for(Map.Entry<Object, ListMultimap<String, Object>> entry : entries){
+			Map<String, Object> arguments = new LinkedHashMap<>();
+			arguments.putAll((entry.getValue()).asMap());
+
+			// The value of the "group by" column is a single Object, not a Collection (ie. java.util.List) of Objects
+			arguments.put(groupName, entry.getKey());
+
+			EvaluationRequest resultRequest = new EvaluationRequest()
+				.setArguments(arguments);
+
+			resultRequests.add(resultRequest);
+		}
+
+		return resultRequests;
+	}
+
+	static
+	protected ColumnarEvaluationRequest toColumnarRequest(List<EvaluationRequest> requests){
+		Set<String> names = new LinkedHashSet<>();
+
+		for(EvaluationRequest request : requests){
+			Map<String, ?> arguments = request.getArguments();
+
+			names.addAll(arguments.keySet());
+		}
+
+		List<String> rowIds = new ArrayList<>(requests.size());
+
+		Map<String, List<?>> columns = new LinkedHashMap<>();
+
+		for(String name : names){
+			columns.put(name, new ArrayList<>(requests.size()));
+		}
+
+		for(EvaluationRequest request : requests){
+			rowIds.add(request.getId());
+
+			Map<String, ?> arguments = request.getArguments();
+
+			// Arguments that are missing from this request are filled with nulls, so that all columns stay aligned with row ids
+			Collection<? extends Map.Entry<String, List<?>>> entries = columns.entrySet();
+			for(Map.Entry<String, List<?>> entry : entries){
+				@SuppressWarnings("unchecked")
+				List<Object> column = (List<Object>)entry.getValue();
+
+				column.add(arguments.get(entry.getKey()));
+			}
+		}
+
+		ColumnarEvaluationRequest columnarRequest = new ColumnarEvaluationRequest()
+			.setRowIds(rowIds)
+			.setColumns(columns);
+
+		return columnarRequest;
+	}
+
+	static
+	private List<String> createColumns(String idColumn, List<EvaluationResponse> responses){
+		List<String> columns = new ArrayList<>();
+
+		if(idColumn != null){
+			columns.add(idColumn);
+		}
+
+		responses:
+		for(EvaluationResponse response : responses){
+			String message = response.getMessage();
+
+			if(message != null){
+				continue;
+			}
+
+			Map<String, ?> results = response.getResults();
+
+			columns.addAll(results.keySet());
+
+			break responses;
+		}
+
+		return columns;
+	}
+
+	/**
+	 * <p>
+	 * Reads the next chunk of evaluation requests.
+	 * </p>
+	 */
+	static
+	private List<EvaluationRequest> readRequests(MappingIterator<EvaluationRequest> requestIterator, int limit) throws IOException {
+		List<EvaluationRequest> requests = new ArrayList<>();
+
+		while(requests.size() < limit && requestIterator.hasNextValue()){
+			EvaluationRequest request = requestIterator.nextValue();
+
+			requests.add(request);
+		}
+
+		return requests;
+	}
+
+	/**
+	 * <p>
+	 * Terminates a committed NDJSON response body with a record that has no id, and describes the failure.
+	 * </p>
+	 */
+	static
+	private void writeErrorRecord(ObjectWriter lineWriter, JsonGenerator generator, Exception e) throws IOException {
+		EvaluationResponse response = new EvaluationResponse();
+		response.setMessage(e.toString());
+
+		lineWriter.writeValue(generator, response);
+
+		generator.writeRaw('\n');
+	}
+
+	/**
+	 * <p>
+	 * Parses a single byte range.
+	 * </p>
+	 *
+	 * @return The first and the last byte position,
+	 * an empty array if the byte range is not satisfiable,
+	 * or <code>null</code> if the byte range should be ignored (eg. multiple byte ranges).
+	 */
+	static
+	long[] parseRange(String range, long size){
+
+		if(!range.startsWith("bytes=") || range.indexOf(',') > -1){
+			return null;
+		}
+
+		String spec = (range.substring("bytes=".length())).trim();
+
+		int dash = spec.indexOf('-');
+		if(dash < 0){
+			return null;
+		}
+
+		long first;
+		long last;
+
+		try {
+			// Suffix byte range, eg. "bytes=-500"
+			if(dash == 0){
+				long suffixLength = Long.parseLong(spec.substring(1));
+
+				if(suffixLength <= 0L || size == 0L){
+					return new long[0];
+				}
+
+				first = Math.max(size - suffixLength, 0L);
+				last = size - 1;
+			} else
+
+			{
+				first = Long.parseLong(spec.substring(0, dash));
+				last = (dash < spec.length() - 1 ? Long.parseLong(spec.substring(dash + 1)) : size - 1);
+
+				if(first < 0L || last < first){
+					return null;
+				} // End if
+
+				if(first >= size){
+					return new long[0];
+				}
+
+				last = Math.min(last, size - 1);
+			}
+		} catch(NumberFormatException nfe){
+			return null;
+		}
+
+		return new long[]{first, last};
+	}
+
+	static
+	private int getRowCount(ColumnarEvaluationRequest columnarRequest){
+		int result = -1;
+
+		List<String> rowIds = columnarRequest.getRowIds();
+		if(rowIds != null){
+			result = rowIds.size();
+		}
+
+		Map<String, List<?>> columns = columnarRequest.getColumns();
+		if(columns != null){
+			Collection<Map.Entry<String, List<?>>> entries = columns.entrySet();
+
+			for(Map.Entry<String, List<?>> entry : entries){
+				List<?> column = entry.getValue();
+
+				int size = (column != null ? column.size() : 0);
+
+				if(result == -1){
+					result = size;
+				} else
+
+				if(result != size){
+					throw new IllegalArgumentException("Column " + entry.getKey() + " has " + size + " rows, expected " + result + " rows");
+				}
+			}
+		}
+
+		return Math.max(result, 0);
+	}
+
+	static
+	private Map<String, List<?>> createResultColumns(List<Map<String, ?>> results){
+		Map<String, List<?>> columns = new LinkedHashMap<>();
+
+		if(results.isEmpty()){
+			return columns;
+		}
+
+		Collection<String> names = (results.get(0)).keySet();
+		for(String name : names){
+			List<Object> column = new ArrayList<>(results.size());
+
+			for(Map<String, ?> result : results){
+				column.add(result.get(name));
+			}
+
+			columns.put(name, column);
+		}
+
+		return columns;
+	}
+
+	static
+	private boolean hasGroupFields(Evaluator evaluator){
+
+		if(evaluator instanceof HasGroupFields){
+			HasGroupFields hasGroupFields = (HasGroupFields)evaluator;
+
+			List<InputField> groupFields = hasGroupFields.getGroupFields();
+
+			return !groupFields.isEmpty();
+		}
+
+		return false;
+	}
+
+	static
+	protected EvaluationResponse evaluate(Model model, EvaluationRequest request){
+		return evaluate(model, request, null);
+	}
+
+	/**
+	 * @param resultCache The result cache, or <code>null</code>.
+	 */
+	static
+	protected EvaluationResponse evaluate(Model model, EvaluationRequest request, ResultCache resultCache){
+		return evaluate(model, request, resultCache, null, null);
+	}
+
+	/**
+	 * @param resultCache The result cache, or <code>null</code>.
+	 * @param prepareHistogram The latency histogram of the argument preparation phase, or <code>null</code>.
+	 * @param evaluateHistogram The latency histogram of the evaluation phase, or <code>null</code>.
+	 */
+	static
+	protected EvaluationResponse evaluate(Model model, EvaluationRequest request, ResultCache resultCache, MetricRegistry.Histogram prepareHistogram, MetricRegistry.Histogram evaluateHistogram){
+		ArgumentBinder argumentBinder = model.getArgumentBinder();
+
+		EvaluationResponse response = new EvaluationResponse(request.getId());
+
+		long start = System.nanoTime();
+
+		ArgumentBinder.ArgumentMap arguments = argumentBinder.bind(request);
+
+		long prepared = observe(prepareHistogram, start);
+
+		logger.debug("Evaluation request {} has prepared arguments: {}", request.getId(), arguments);
+
+		Map<String, ?> results = evaluate(model, arguments, resultCache);
+
+		observe(evaluateHistogram, prepared);
+
+		logger.debug("Evaluation response {} has result: {}", response.getId(), results);
+
+		response.setResults(results);
+
+		return response;
+	}
+
+	/**
+	 * @param resultCache The result cache, or <code>null</code>.
+	 *
+	 * @return Decoded results.
+	 */
+	static
+	protected Map<String, ?> evaluate(Model model, ArgumentBinder.ArgumentMap arguments, ResultCache resultCache){
+
+		if(resultCache != null){
+			return resultCache.get(model, arguments.getValues(), () -> evaluate(model, arguments));
+		}
+
+		return evaluate(model, arguments);
+	}
+
+	/**
+	 * @return Decoded results.
+	 */
+	static
+	protected Map<String, ?> evaluate(Model model, Map<String, FieldValue> arguments){
+		Evaluator evaluator = model.getEvaluator();
+
+		Map<String, ?> results = evaluator.evaluate(arguments);
 
 		// Jackson does not support the JSON serialization of <code>null</code> map keys
 		if(results.containsKey(null)){
 			results = replaceNullKey(results);
 		}
 
-		logger.debug("Evaluation response {} has result: {}", response.getId(), results);
+		return EvaluatorUtil.decodeAll(results);
+	}
+
+	/**
+	 * @return The model that should serve the evaluation.
+	 *
+	 * @throws NotFoundException If the requested version is not part of the route.
+	 */
+	private ModelRef resolveRoute(ModelRef routeRef){
+		ModelRef modelRef = this.modelRouter.resolve(routeRef, this.version);
+		if(modelRef == null){
+			logger.error("Not found");
+
+			throw new NotFoundException();
+		}
+
+		return modelRef;
+	}
+
+	/**
+	 * @return An acquired model, which must be released by the caller.
+	 *
+	 * @throws NotFoundException If the model does not exist.
+	 */
+	private Model acquireModel(ModelRef modelRef){
+		Model model = this.modelRegistry.acquire(modelRef, true);
+		if(model == null){
+			logger.error("Not found");
+
+			throw new NotFoundException();
+		}
+
+		return model;
+	}
+
+	private MetricRegistry.Histogram getPhaseHistogram(ModelRef modelRef, String phase){
+		return this.metricRegistry.getPhaseHistogram((Endpoint.Family.EVALUATION).name(), modelRef, phase);
+	}
+
+	private void observeBatchSize(ModelRef modelRef, int size){
+		MetricRegistry.Histogram histogram = this.metricRegistry.getBatchSizeHistogram(modelRef);
+
+		if(histogram != null){
+			histogram.observe(size);
+		}
+	}
 
-		response.setResults(EvaluatorUtil.decodeAll(results));
+	private ResultCache getResultCache(ModelRef modelRef){
+		ResultCache resultCache = this.resultCache;
 
-		logger.info("Returned {}", response);
+		if(resultCache != null && resultCache.isEnabled(modelRef.getId())){
+			return resultCache;
+		}
+
+		return null;
+	}
+
+	private void removeResultCacheStats(Model model){
+		ResultCache resultCache = this.resultCache;
+
+		if(resultCache == null){
+			return;
+		}
+
+		// Models that have been deployed from the same PMML document and model element share hit and miss counts
+		String checksum = (String)model.getProperty(Model.PROPERTY_FILE_CHECKSUM);
+		if(checksum != null && !this.modelRegistry.containsChecksum(checksum, model.getModelName())){
+			resultCache.removeStats(checksum, model.getModelName());
+		}
+	}
+
+	/**
+	 * @return The current time in nanoseconds.
+	 */
+	static
+	private long observe(MetricRegistry.Histogram histogram, long start){
+		long end = System.nanoTime();
+
+		if(histogram != null){
+			histogram.observeNanos(end - start);
+		}
+
+		return end;
+	}
+
+	static
+	private DeploymentResponse createDeploymentResponse(String id, DeploymentExecutor.Deployment deployment){
+		DeploymentResponse response = new DeploymentResponse(id)
+			.setStatus(deployment.getStatus());
+
+		response.setMessage(deployment.getMessage());
 
 		return response;
 	}
 
 	static
+	private RouteResponse createRouteResponse(String id, ModelRouter.Route route){
+		RouteResponse response = new RouteResponse(id)
+			.setWeights(route.getWeights());
+
+		String shadow = route.getShadow();
+		if(shadow != null){
+			response
+				.setShadow(shadow)
+				.setShadowRate(route.getShadowRate())
+				.setShadowEvaluations(route.getShadowCount())
+				.setShadowDisagreements(route.getShadowDisagreementCount());
+		}
+
+		return response;
+	}
+
 	private ModelResponse createModelResponse(String id, Model model, boolean expand){
+		Map<String, Object> properties = model.getProperties();
+
+		ArgumentBinder argumentBinder = model.getArgumentBinder();
+
+		CacheStats valueCacheStats = argumentBinder.getValueCacheStats();
+		if(valueCacheStats != null){
+			properties.put(Model.PROPERTY_VALUE_CACHE_HIT_COUNT, valueCacheStats.hitCount());
+			properties.put(Model.PROPERTY_VALUE_CACHE_MISS_COUNT, valueCacheStats.missCount());
+		}
+
+		CacheStats resultCacheStats = (this.resultCache != null ? this.resultCache.getStats(model) : null);
+		if(resultCacheStats != null){
+			properties.put(Model.PROPERTY_RESULT_CACHE_HIT_COUNT, resultCacheStats.hitCount());
+			properties.put(Model.PROPERTY_RESULT_CACHE_MISS_COUNT, resultCacheStats.missCount());
+		}
+
 		ModelResponse response = new ModelResponse(id)
 			.setMiningFunction(model.getMiningFunction())
 			.setSummary(model.getSummary())
-			.setProperties(model.getProperties());
+			.setProperties(properties);
 
 		if(expand){
 			response.setSchema(model.getSchema());
@@ -525,5 +1662,16 @@ public class ModelResource {
 		return result;
 	}
 
+	public static final String APPLICATION_NDJSON = "application/x-ndjson";
+	public static final String APPLICATION_CBOR = "application/cbor";
+	public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+
+	private static final String HEADER_RANGE = "Range";
+	private static final String HEADER_IF_RANGE = "If-Range";
+	private static final String HEADER_CONTENT_RANGE = "Content-Range";
+	private static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+
+	private static final Annotation[] NO_ANNOTATIONS = {};
+
 	private static final Logger logger = LoggerFactory.getLogger(ModelResource.class);
 }
@@ -0,0 +1,450 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.TargetField;
+import org.openscoring.common.EvaluationRequest;
+import org.openscoring.common.EvaluationResponse;
+import org.openscoring.common.ModelResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Traffic splitting between model versions.
+ * </p>
+ *
+ * <p>
+ * Model versions are ordinary models, which are deployed under their own identifiers.
+ * A route makes a model identifier dispatch evaluations between versions,
+ * either randomly in proportion to their weights, or as requested by the <code>X-Model-Version</code> header.
+ * The route may name its own identifier as one of the versions.
+ * </p>
+ *
+ * <p>
+ * A route may also name a shadow version, which scores a sample of the evaluated records after the response has been computed.
+ * Shadow evaluations are queued for a dedicated thread pool.
+ * When the queue is full, they are dropped rather than blocking the request thread.
+ * </p>
+ */
+public class ModelRouter {
+
+	private ModelRegistry modelRegistry = null;
+
+	private ConcurrentMap<ModelRef, Route> routes = new ConcurrentHashMap<>();
+
+	private ThreadPoolExecutor executor = null;
+
+	private AtomicLong droppedCount = new AtomicLong();
+
+
+	/**
+	 * @param parallelism The number of shadow evaluation threads.
+	 * @param queueCapacity The maximum number of shadow evaluation tasks that are waiting for a thread.
+	 */
+	public ModelRouter(ModelRegistry modelRegistry, int parallelism, int queueCapacity){
+		this.modelRegistry = Objects.requireNonNull(modelRegistry);
+
+		if(parallelism < 1){
+			throw new IllegalArgumentException("Parallelism must be positive");
+		} // End if
+
+		if(queueCapacity < 1){
+			throw new IllegalArgumentException("Queue capacity must be positive");
+		}
+
+		ThreadFactory threadFactory = new ThreadFactory(){
+
+			private AtomicInteger count = new AtomicInteger();
+
+
+			@Override
+			public Thread newThread(Runnable runnable){
+				Thread thread = new Thread(runnable, "openscoring-shadow-" + this.count.incrementAndGet());
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		};
+
+		this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+	}
+
+	public Route getRoute(ModelRef modelRef){
+		return this.routes.get(modelRef);
+	}
+
+	/**
+	 * @return The replaced route, or <code>null</code>.
+	 */
+	public Route putRoute(ModelRef modelRef, Route route){
+		return this.routes.put(modelRef, Objects.requireNonNull(route));
+	}
+
+	/**
+	 * @return The removed route, or <code>null</code>.
+	 */
+	public Route removeRoute(ModelRef modelRef){
+		return this.routes.remove(modelRef);
+	}
+
+	/**
+	 * @param version The requested version, or <code>null</code>.
+	 *
+	 * @return The model that should serve the evaluation, or <code>null</code> if the requested version is not part of the route.
+	 */
+	public ModelRef resolve(ModelRef modelRef, String version){
+		Route route = this.routes.get(modelRef);
+
+		if(route == null){
+			return modelRef;
+		}
+
+		String id;
+
+		if(version != null){
+
+			if(!route.contains(version)){
+				return null;
+			}
+
+			id = version;
+		} else
+
+		{
+			id = route.select(ThreadLocalRandom.current().nextDouble());
+		} // End if
+
+		if((modelRef.getId()).equals(id)){
+			return modelRef;
+		}
+
+		return new ModelRef(modelRef.getOwner(), id);
+	}
+
+	/**
+	 * <p>
+	 * Submits a sample of served evaluations for re-evaluation with the shadow version of the route.
+	 * </p>
+	 *
+	 * <p>
+	 * The argument and result maps of sampled records are copied,
+	 * because response results may be modified by message body writers after this method returns.
+	 * </p>
+	 */
+	public void shadow(ModelRef modelRef, List<EvaluationRequest> requests, List<EvaluationResponse> responses){
+		Route route = this.routes.get(modelRef);
+
+		if(route == null || route.getShadow() == null){
+			return;
+		}
+
+		double shadowRate = route.getShadowRate();
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		List<EvaluationRequest> shadowRequests = new ArrayList<>();
+		List<Map<String, ?>> servedResults = new ArrayList<>();
+
+		for(int i = 0; i < requests.size(); i++){
+			EvaluationRequest request = requests.get(i);
+			EvaluationResponse response = responses.get(i);
+
+			if(shadowRate < 1d && random.nextDouble() >= shadowRate){
+				continue;
+			}
+
+			Map<String, ?> arguments = request.getArguments();
+			Map<String, ?> results = response.getResults();
+
+			// Failed evaluations are not comparable
+			if(arguments == null || results == null){
+				continue;
+			}
+
+			EvaluationRequest shadowRequest = new EvaluationRequest(request.getId())
+				.setArguments(new LinkedHashMap<>(arguments));
+
+			shadowRequests.add(shadowRequest);
+			servedResults.add(new LinkedHashMap<>(results));
+		}
+
+		if(shadowRequests.isEmpty()){
+			return;
+		}
+
+		ModelRef shadowRef = new ModelRef(modelRef.getOwner(), route.getShadow());
+
+		try {
+			this.executor.execute(() -> evaluateShadow(shadowRef, route, shadowRequests, servedResults));
+		} catch(RejectedExecutionException ree){
+			this.droppedCount.addAndGet(shadowRequests.size());
+		}
+	}
+
+	private void evaluateShadow(ModelRef shadowRef, Route route, List<EvaluationRequest> requests, List<Map<String, ?>> servedResults){
+		long droppedCount = this.droppedCount.getAndSet(0);
+		if(droppedCount > 0){
+			logger.warn("Dropped {} shadow evaluation(s)", droppedCount);
+		}
+
+		// Shadow traffic does not count towards the value of the model
+		Model model = this.modelRegistry.acquire(shadowRef, false);
+		if(model == null){
+			logger.warn("Shadow model {} not found", shadowRef.getId());
+
+			return;
+		}
+
+		try {
+			Evaluator evaluator = model.getEvaluator();
+
+			List<String> targetNames = getTargetNames(evaluator);
+
+			for(int i = 0; i < requests.size(); i++){
+				EvaluationRequest request = requests.get(i);
+
+				Map<String, ?> shadowResults;
+
+				try {
+					EvaluationResponse response = ModelResource.evaluate(model, request);
+
+					shadowResults = response.getResults();
+				} catch(Exception e){
+					logger.debug("Failed to evaluate shadow model {}", shadowRef.getId(), e);
+
+					shadowResults = Collections.emptyMap();
+				}
+
+				boolean agreement = agrees(targetNames, servedResults.get(i), shadowResults);
+
+				route.record(agreement);
+
+				if(!agreement){
+					logger.debug("Shadow model {} disagrees on evaluation request {}", shadowRef.getId(), request.getId());
+				}
+			}
+		} catch(RuntimeException re){
+			logger.error("Failed to evaluate shadow model " + shadowRef.getId(), re);
+		} finally {
+			model.release();
+		}
+	}
+
+	public void shutdown(){
+		this.executor.shutdownNow();
+	}
+
+	static
+	private List<String> getTargetNames(Evaluator evaluator){
+		List<String> result = new ArrayList<>();
+
+		List<TargetField> targetFields = evaluator.getTargetFields();
+		for(TargetField targetField : targetFields){
+			String name = targetField.getName();
+
+			result.add(name != null ? name : ModelResponse.DEFAULT_TARGET_NAME);
+		}
+
+		return result;
+	}
+
+	static
+	private boolean agrees(List<String> targetNames, Map<String, ?> servedResults, Map<String, ?> shadowResults){
+
+		for(String targetName : targetNames){
+
+			if(!Objects.equals(servedResults.get(targetName), shadowResults.get(targetName))){
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	static
+	public class Route {
+
+		private String[] ids = null;
+
+		private double[] weights = null;
+
+		private double[] cumulativeWeights = null;
+
+		private String shadow = null;
+
+		private double shadowRate = 0d;
+
+		private LongAdder shadowCount = new LongAdder();
+
+		private LongAdder shadowDisagreementCount = new LongAdder();
+
+
+		/**
+		 * @param weights Model identifiers mapped to their traffic weights.
+		 * A version with zero weight is only served when it is requested explicitly.
+		 * @param shadow The identifier of the shadow model, or <code>null</code>.
+		 * @param shadowRate The fraction of evaluated records that are scored by the shadow model.
+		 */
+		public Route(Map<String, Double> weights, String shadow, double shadowRate){
+
+			if(weights == null || weights.isEmpty()){
+				throw new IllegalArgumentException("Missing weights");
+			}
+
+			this.ids = new String[weights.size()];
+			this.weights = new double[weights.size()];
+			this.cumulativeWeights = new double[weights.size()];
+
+			double sum = 0d;
+
+			int i = 0;
+
+			Collection<? extends Map.Entry<String, Double>> entries = weights.entrySet();
+			for(Map.Entry<String, Double> entry : entries){
+				String id = checkId(entry.getKey());
+				Double weight = entry.getValue();
+
+				if(weight == null || !(weight >= 0d) || Double.isInfinite(weight)){
+					throw new IllegalArgumentException("Invalid weight: " + weight);
+				}
+
+				sum += weight;
+
+				this.ids[i] = id;
+				this.weights[i] = weight;
+				this.cumulativeWeights[i] = sum;
+
+				i++;
+			}
+
+			if(!(sum > 0d)){
+				throw new IllegalArgumentException("Weights must not sum to zero");
+			} // End if
+
+			if(shadow != null){
+				checkId(shadow);
+			} // End if
+
+			if(shadowRate < 0d || shadowRate > 1d){
+				throw new IllegalArgumentException("Invalid shadow rate: " + shadowRate);
+			}
+
+			this.shadow = shadow;
+			this.shadowRate = shadowRate;
+		}
+
+		public boolean contains(String id){
+			return Arrays.asList(this.ids).contains(id);
+		}
+
+		/**
+		 * @param random A random number between 0 (inclusive) and 1 (exclusive).
+		 */
+		public String select(double random){
+			double[] cumulativeWeights = this.cumulativeWeights;
+
+			double value = random * cumulativeWeights[cumulativeWeights.length - 1];
+
+			for(int i = 0; i < cumulativeWeights.length; i++){
+
+				if(value < cumulativeWeights[i]){
+					return this.ids[i];
+				}
+			}
+
+			// Guard against rounding errors, fall back to the last version that has a non-zero weight
+			for(int i = this.weights.length - 1; i > 0; i--){
+
+				if(this.weights[i] > 0d){
+					return this.ids[i];
+				}
+			}
+
+			return this.ids[0];
+		}
+
+		private void record(boolean agreement){
+			this.shadowCount.increment();
+
+			if(!agreement){
+				this.shadowDisagreementCount.increment();
+			}
+		}
+
+		public Map<String, Double> getWeights(){
+			Map<String, Double> result = new LinkedHashMap<>();
+
+			for(int i = 0; i < this.ids.length; i++){
+				result.put(this.ids[i], this.weights[i]);
+			}
+
+			return result;
+		}
+
+		public String getShadow(){
+			return this.shadow;
+		}
+
+		public double getShadowRate(){
+			return this.shadowRate;
+		}
+
+		public long getShadowCount(){
+			return this.shadowCount.sum();
+		}
+
+		public long getShadowDisagreementCount(){
+			return this.shadowDisagreementCount.sum();
+		}
+
+		static
+		private String checkId(String id){
+
+			if(!ModelRef.validateId(id)){
+				throw new IllegalArgumentException("Invalid identifier: " + id);
+			}
+
+			return id;
+		}
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(ModelRouter.class);
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.typesafe.config.Config;
+import org.jpmml.model.ToStringHelper;
+
+/**
+ * <p>
+ * A persistence backend for deployed models.
+ * </p>
+ *
+ * <p>
+ * This base implementation does not persist anything.
+ * Model owners are identified by their {@link java.security.Principal#getName() principal name},
+ * where the anonymous principal has a <code>null</code> name.
+ * </p>
+ *
+ * @see DirectoryModelStore
+ */
+public class ModelStore {
+
+	public ModelStore(Config config){
+	}
+
+	/**
+	 * @return Stored models, in no particular order.
+	 */
+	public List<Entry> list() throws IOException {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @return The stored model, or <code>null</code> if the model was not stored.
+	 */
+	public Entry store(ModelRef modelRef, Model model) throws IOException {
+		return null;
+	}
+
+	public void delete(ModelRef modelRef) throws IOException {
+	}
+
+	abstract
+	static public class Entry {
+
+		private String owner = null;
+
+		private String id = null;
+
+		private String modelName = null;
+
+		private Map<String, Object> properties = null;
+
+
+		public Entry(String owner, String id, String modelName, Map<String, Object> properties){
+			this.owner = owner;
+			this.id = Objects.requireNonNull(id);
+			this.modelName = modelName;
+			this.properties = Objects.requireNonNull(properties);
+		}
+
+		abstract
+		public InputStream open() throws IOException;
+
+		/**
+		 * @return The stored PMML document as a local file, or <code>null</code> if not available.
+		 */
+		public Path getFile(){
+			return null;
+		}
+
+		/**
+		 * <p>
+		 * The checksum of the stored PMML document may differ from the {@link Model#PROPERTY_FILE_CHECKSUM checksum of the uploaded PMML document}.
+		 * </p>
+		 *
+		 * @return The SHA-256 checksum of the local file, or <code>null</code> if not available.
+		 *
+		 * @see #getFile()
+		 */
+		public String getFileChecksum(){
+			return null;
+		}
+
+		@Override
+		public String toString(){
+			ToStringHelper helper = new ToStringHelper(this)
+				.add("owner", getOwner())
+				.add("id", getId())
+				.add("modelName", getModelName());
+
+			return helper.toString();
+		}
+
+		public String getOwner(){
+			return this.owner;
+		}
+
+		public String getId(){
+			return this.id;
+		}
+
+		/**
+		 * @return The requested name of the model element, or <code>null</code> if the default model element was requested.
+		 *
+		 * @see Model#getModelName()
+		 */
+		public String getModelName(){
+			return this.modelName;
+		}
+
+		/**
+		 * @return The model properties at the time of deployment.
+		 */
+		public Map<String, Object> getProperties(){
+			return this.properties;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.dmg.pmml.DataType;
+import org.dmg.pmml.OpType;
+import org.openscoring.common.EvaluationRequest;
+import org.openscoring.common.Field;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Warms up a newly loaded model by evaluating synthetic data records,
+ * so that the JIT compiler has optimized the evaluation code path before the model starts receiving real traffic.
+ * </p>
+ *
+ * <p>
+ * Synthetic data records are generated from the model schema.
+ * Categorical and ordinal values are drawn from the list of valid values,
+ * and continuous values from the valid intervals.
+ * Evaluation failures are expected, and are ignored.
+ * </p>
+ *
+ * <p>
+ * Synthetic data records are bound using a throwaway copy of the argument binder,
+ * so that they do not end up in the value caches (and their statistics) of the model.
+ * </p>
+ */
+public class ModelWarmer {
+
+	private int evaluations = 0;
+
+	private long timeout = 0L;
+
+
+	/**
+	 * @param evaluations The number of synthetic evaluations, or <code>0</code> to disable warm-up.
+	 * @param timeout The time limit.
+	 */
+	public ModelWarmer(int evaluations, Duration timeout){
+		this.evaluations = evaluations;
+		this.timeout = timeout.toNanos();
+	}
+
+	/**
+	 * @return The number of completed synthetic evaluations.
+	 */
+	public int warmUp(Model model){
+
+		if(this.evaluations <= 0){
+			return 0;
+		}
+
+		Map<String, List<Field>> schema = model.getSchema();
+
+		// Aggregation requires the complete batch
+		if(schema.containsKey("groupFields")){
+			return 0;
+		}
+
+		List<Field> inputFields = schema.getOrDefault("inputFields", Collections.emptyList());
+
+		ArgumentBinder argumentBinder = (model.getArgumentBinder()).copy();
+
+		// Deterministic, so that warm-up behaves the same way every time
+		Random random = new Random(0L);
+
+		long start = System.nanoTime();
+
+		int count = 0;
+		int failureCount = 0;
+
+		for(; count < this.evaluations; count++){
+
+			if(System.nanoTime() - start > this.timeout){
+				break;
+			}
+
+			EvaluationRequest request = new EvaluationRequest("warmup-" + count)
+				.setArguments(createArguments(inputFields, random));
+
+			try {
+				ModelResource.evaluate(model, argumentBinder.bind(request));
+			} catch(Exception e){
+				failureCount++;
+			}
+		}
+
+		logger.info("Warmed up the model using {} synthetic evaluation(s) ({} failed) in {} ms", count, failureCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+		return count;
+	}
+
+	public int getEvaluations(){
+		return this.evaluations;
+	}
+
+	static
+	Map<String, Object> createArguments(List<Field> inputFields, Random random){
+		Map<String, Object> result = new LinkedHashMap<>();
+
+		for(Field inputField : inputFields){
+
+			// Exercise missing value handling
+			if(random.nextInt(20) == 0){
+				result.put(inputField.getId(), null);
+
+				continue;
+			}
+
+			result.put(inputField.getId(), createValue(inputField, random));
+		}
+
+		return result;
+	}
+
+	static
+	private Object createValue(Field field, Random random){
+		OpType opType = field.getOpType();
+		List<String> values = field.getValues();
+
+		if(values == null){
+			values = Collections.emptyList();
+		} // End if
+
+		if(opType == OpType.CONTINUOUS){
+			double value;
+
+			if(!values.isEmpty()){
+				String interval = values.get(random.nextInt(values.size()));
+
+				value = sample(interval, random);
+			} else
+
+			{
+				value = random.nextGaussian();
+			}
+
+			DataType dataType = field.getDataType();
+
+			if(dataType == DataType.INTEGER){
+				return Math.round(value);
+			} else
+
+			if(dataType == DataType.FLOAT){
+				return (float)value;
+			}
+
+			return value;
+		} // End if
+
+		if(!values.isEmpty()){
+			return values.get(random.nextInt(values.size()));
+		}
+
+		return null;
+	}
+
+	/**
+	 * @param interval An interval in the format of {@link ModelUtil#encodeSchema(org.jpmml.evaluator.Evaluator)}, e.g. <code>[0.0, 1.0)</code>.
+	 */
+	static
+	private double sample(String interval, Random random){
+		String[] margins = (interval.substring(1, interval.length() - 1)).split(", ");
+
+		double leftMargin;
+		double rightMargin;
+
+		try {
+			leftMargin = Double.parseDouble(margins[0]);
+			rightMargin = Double.parseDouble(margins[1]);
+		} catch(RuntimeException re){
+			return random.nextGaussian();
+		}
+
+		if(Double.isInfinite(leftMargin) && Double.isInfinite(rightMargin)){
+			return random.nextGaussian();
+		} else
+
+		if(Double.isInfinite(leftMargin)){
+			return rightMargin - Math.abs(random.nextGaussian());
+		} else
+
+		if(Double.isInfinite(rightMargin)){
+			return leftMargin + Math.abs(random.nextGaussian());
+		}
+
+		return leftMargin + random.nextDouble() * (rightMargin - leftMargin);
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(ModelWarmer.class);
+}
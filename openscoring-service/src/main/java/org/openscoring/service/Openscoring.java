@@ -21,14 +21,32 @@ package org.openscoring.service;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.nio.file.Paths;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.validation.Schema;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.jakarta.rs.cbor.JacksonCBORProvider;
 import com.fasterxml.jackson.jakarta.rs.json.JacksonJsonProvider;
+import com.fasterxml.jackson.jakarta.rs.smile.JacksonSmileProvider;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigRenderOptions;
+import com.typesafe.config.ConfigValue;
 import jakarta.xml.bind.ValidationEvent;
 import jakarta.xml.bind.ValidationEventHandler;
 import org.dmg.pmml.Visitor;
@@ -41,6 +59,9 @@ import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.server.filter.EncodingFilter;
 import org.glassfish.jersey.server.filter.HttpMethodOverrideFilter;
 import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
+import org.glassfish.jersey.server.spi.AbstractContainerLifecycleListener;
+import org.glassfish.jersey.server.spi.Container;
+import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
 import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
 import org.jpmml.evaluator.ModelEvaluatorFactory;
 import org.jpmml.evaluator.OutputFilters;
@@ -50,9 +71,13 @@ import org.jpmml.model.JAXBUtil;
 import org.jpmml.model.visitors.VisitorBattery;
 import org.openscoring.common.providers.ObjectMapperProvider;
 import org.openscoring.service.filters.ApplicationHeaderFilter;
+import org.openscoring.service.filters.IndentationFilter;
+import org.openscoring.service.filters.MetricsFilter;
 import org.openscoring.service.providers.ModelProvider;
 import org.openscoring.service.providers.ModelRefConverterProvider;
 import org.openscoring.service.providers.TableProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
 public class Openscoring extends ResourceConfig {
@@ -63,6 +88,24 @@ public class Openscoring extends ResourceConfig {
 
 	private LoadingModelEvaluatorBuilder loadingModelEvaluatorBuilder = null;
 
+	private ModelLoader modelLoader = null;
+
+	private ModelStore modelStore = null;
+
+	private DeploymentExecutor deploymentExecutor = null;
+
+	private ModelWarmer modelWarmer = null;
+
+	private EvaluationExecutor evaluationExecutor = null;
+
+	private EvaluationTracer evaluationTracer = null;
+
+	private ResultCache resultCache = null;
+
+	private MetricRegistry metricRegistry = null;
+
+	private ModelRouter modelRouter = null;
+
 
 	public Openscoring(){
 		Config config = ConfigFactory.load();
@@ -104,9 +147,130 @@ public class Openscoring extends ResourceConfig {
 		};
 		register(loadingModelEvaluatorBuilderBinder);
 
+		ModelLoader modelLoader = createModelLoader(config, loadingModelEvaluatorBuilder);
+
+		setModelLoader(modelLoader);
+
+		Binder modelLoaderBinder = new AbstractBinder(){
+
+			@Override
+			public void configure(){
+				bind(modelLoader).to(ModelLoader.class).named("openscoring");
+			}
+		};
+		register(modelLoaderBinder);
+
+		ModelStore modelStore = createModelStore(config);
+
+		setModelStore(modelStore);
+
+		Binder modelStoreBinder = new AbstractBinder(){
+
+			@Override
+			public void configure(){
+				bind(modelStore).to(ModelStore.class).named("openscoring");
+			}
+		};
+		register(modelStoreBinder);
+
+		// Restore stored models before accepting any requests
+		restoreModels(config, modelRegistry, modelLoader, modelStore);
+
+		DeploymentExecutor deploymentExecutor = createDeploymentExecutor(config);
+
+		setDeploymentExecutor(deploymentExecutor);
+
+		Binder deploymentExecutorBinder = new AbstractBinder(){
+
+			@Override
+			public void configure(){
+				bind(deploymentExecutor).to(DeploymentExecutor.class).named("openscoring");
+			}
+		};
+		register(deploymentExecutorBinder);
+
+		ModelWarmer modelWarmer = createModelWarmer(config);
+
+		setModelWarmer(modelWarmer);
+
+		Binder modelWarmerBinder = new AbstractBinder(){
+
+			@Override
+			public void configure(){
+				bind(modelWarmer).to(ModelWarmer.class).named("openscoring");
+			}
+		};
+		register(modelWarmerBinder);
+
+		EvaluationExecutor evaluationExecutor = createEvaluationExecutor(config);
+
+		setEvaluationExecutor(evaluationExecutor);
+
+		Binder evaluationExecutorBinder = new AbstractBinder(){
+
+			@Override
+			public void configure(){
+				bind(evaluationExecutor).to(EvaluationExecutor.class).named("openscoring");
+			}
+		};
+		register(evaluationExecutorBinder);
+
+		EvaluationTracer evaluationTracer = createEvaluationTracer(config);
+
+		setEvaluationTracer(evaluationTracer);
+
+		Binder evaluationTracerBinder = new AbstractBinder(){
+
+			@Override
+			public void configure(){
+				bind(evaluationTracer).to(EvaluationTracer.class).named("openscoring");
+			}
+		};
+		register(evaluationTracerBinder);
+
+		ResultCache resultCache = createResultCache(config);
+
+		setResultCache(resultCache);
+
+		Binder resultCacheBinder = new AbstractBinder(){
+
+			@Override
+			public void configure(){
+				bind(resultCache).to(ResultCache.class).named("openscoring");
+			}
+		};
+		register(resultCacheBinder);
+
+		MetricRegistry metricRegistry = createMetricRegistry(config, modelRegistry);
+
+		setMetricRegistry(metricRegistry);
+
+		Binder metricRegistryBinder = new AbstractBinder(){
+
+			@Override
+			public void configure(){
+				bind(metricRegistry).to(MetricRegistry.class).named("openscoring");
+			}
+		};
+		register(metricRegistryBinder);
+
+		ModelRouter modelRouter = createModelRouter(config, modelRegistry);
+
+		setModelRouter(modelRouter);
+
+		Binder modelRouterBinder = new AbstractBinder(){
+
+			@Override
+			public void configure(){
+				bind(modelRouter).to(ModelRouter.class).named("openscoring");
+			}
+		};
+		register(modelRouterBinder);
+
 		Config applicationConfig = config.getConfig("application");
 
 		register(ModelResource.class);
+		register(MetricsResource.class);
 
 		// Convert path variables to ModelRef objects
 		register(loadClass(ModelRefConverterProvider.class, applicationConfig));
@@ -115,8 +279,16 @@ public class Openscoring extends ResourceConfig {
 		register(loadClass(ModelProvider.class, applicationConfig));
 
 		// JSON support
-		register(JacksonJsonProvider.class);
-		register(ObjectMapperProvider.class);
+		ObjectMapperProvider objectMapperProvider = new ObjectMapperProvider();
+
+		// The JSON provider shares the object mapper (and its warmed up serializer and deserializer caches) with the streaming endpoints
+		register(new JacksonJsonProvider(objectMapperProvider.getObjectMapper()));
+		register(objectMapperProvider);
+		register(IndentationFilter.class);
+
+		// CBOR and Smile support
+		register(new JacksonCBORProvider(ObjectMapperProvider.configure(new CBORMapper())));
+		register(new JacksonSmileProvider(ObjectMapperProvider.configure(new SmileMapper())));
 
 		// CSV support
 		register(loadClass(TableProvider.class, applicationConfig));
@@ -141,6 +313,19 @@ public class Openscoring extends ResourceConfig {
 		// Application identification
 		register(ApplicationHeaderFilter.class);
 
+		// Request metrics
+		register(MetricsFilter.class);
+
+		// Release thread pools when the application is undeployed
+		ContainerLifecycleListener lifecycleListener = new AbstractContainerLifecycleListener(){
+
+			@Override
+			public void onShutdown(Container container){
+				shutdown();
+			}
+		};
+		register(lifecycleListener);
+
 		List<String> componentClassNames = applicationConfig.getStringList("componentClasses");
 		for(String componentClassName : componentClassNames){
 			Class<?> clazz = loadClass(Object.class, componentClassName);
@@ -149,6 +334,13 @@ public class Openscoring extends ResourceConfig {
 		}
 	}
 
+	public void shutdown(){
+		this.deploymentExecutor.shutdown();
+		this.evaluationExecutor.shutdown();
+		this.modelRouter.shutdown();
+		this.evaluationTracer.shutdown();
+	}
+
 	public Config getConfig(){
 		return this.config;
 	}
@@ -173,13 +365,338 @@ public class Openscoring extends ResourceConfig {
 		this.loadingModelEvaluatorBuilder = loadingModelEvaluatorBuilder;
 	}
 
+	public ModelLoader getModelLoader(){
+		return this.modelLoader;
+	}
+
+	private void setModelLoader(ModelLoader modelLoader){
+		this.modelLoader = modelLoader;
+	}
+
+	public ModelStore getModelStore(){
+		return this.modelStore;
+	}
+
+	private void setModelStore(ModelStore modelStore){
+		this.modelStore = modelStore;
+	}
+
+	public DeploymentExecutor getDeploymentExecutor(){
+		return this.deploymentExecutor;
+	}
+
+	private void setDeploymentExecutor(DeploymentExecutor deploymentExecutor){
+		this.deploymentExecutor = deploymentExecutor;
+	}
+
+	public ModelWarmer getModelWarmer(){
+		return this.modelWarmer;
+	}
+
+	private void setModelWarmer(ModelWarmer modelWarmer){
+		this.modelWarmer = modelWarmer;
+	}
+
+	public EvaluationExecutor getEvaluationExecutor(){
+		return this.evaluationExecutor;
+	}
+
+	private void setEvaluationExecutor(EvaluationExecutor evaluationExecutor){
+		this.evaluationExecutor = evaluationExecutor;
+	}
+
+	public EvaluationTracer getEvaluationTracer(){
+		return this.evaluationTracer;
+	}
+
+	private void setEvaluationTracer(EvaluationTracer evaluationTracer){
+		this.evaluationTracer = evaluationTracer;
+	}
+
+	public ResultCache getResultCache(){
+		return this.resultCache;
+	}
+
+	private void setResultCache(ResultCache resultCache){
+		this.resultCache = resultCache;
+	}
+
+	public MetricRegistry getMetricRegistry(){
+		return this.metricRegistry;
+	}
+
+	private void setMetricRegistry(MetricRegistry metricRegistry){
+		this.metricRegistry = metricRegistry;
+	}
+
+	public ModelRouter getModelRouter(){
+		return this.modelRouter;
+	}
+
+	private void setModelRouter(ModelRouter modelRouter){
+		this.modelRouter = modelRouter;
+	}
+
 	static
 	private ModelRegistry createModelRegistry(Config config){
-		ModelRegistry modelRegistry = new ModelRegistry();
+		Config modelRegistryConfig = config.getConfig("modelRegistry");
+
+		boolean lazy = modelRegistryConfig.getBoolean("lazy");
+		long heapBudget = modelRegistryConfig.getBytes("heapBudget");
+		Duration accessHalfLife = modelRegistryConfig.getDuration("accessHalfLife");
+		long ownerHeapQuota = modelRegistryConfig.getBytes("ownerHeapQuota");
+
+		ModelRegistry modelRegistry = new ModelRegistry(lazy, heapBudget, accessHalfLife, ownerHeapQuota);
 
 		return modelRegistry;
 	}
 
+	static
+	private ModelLoader createModelLoader(Config config, LoadingModelEvaluatorBuilder loadingModelEvaluatorBuilder){
+		Config modelLoaderConfig = config.getConfig("modelLoader");
+		Config argumentBinderConfig = config.getConfig("argumentBinder");
+
+		long valueCacheSize = argumentBinderConfig.getLong("valueCacheSize");
+
+		boolean shareEvaluators = modelLoaderConfig.getBoolean("shareEvaluators");
+
+		int spoolThreshold = Math.toIntExact(modelLoaderConfig.getBytes("spoolThreshold"));
+		long maxUploadSize = modelLoaderConfig.getBytes("maxUploadSize");
+
+		String snapshotDirectory = modelLoaderConfig.getString("snapshotDirectory");
+		if(snapshotDirectory.isEmpty()){
+			return new ModelLoader(loadingModelEvaluatorBuilder, valueCacheSize, shareEvaluators, null, null, spoolThreshold, maxUploadSize);
+		}
+
+		Config modelEvaluatorBuilderConfig = config.getConfig("modelEvaluatorBuilder");
+
+		// Snapshots become stale when the model evaluator builder configuration or the JPMML-Evaluator library version changes
+		Package evaluatorPackage = (ModelEvaluatorFactory.class).getPackage();
+
+		String fingerprint = (modelEvaluatorBuilderConfig.root()).render(ConfigRenderOptions.concise()) + "@" + evaluatorPackage.getImplementationVersion();
+
+		ModelLoader modelLoader = new ModelLoader(loadingModelEvaluatorBuilder, valueCacheSize, shareEvaluators, Paths.get(snapshotDirectory), fingerprint, spoolThreshold, maxUploadSize);
+
+		return modelLoader;
+	}
+
+	static
+	private ModelStore createModelStore(Config config){
+		Config modelStoreConfig = config.getConfig("modelStore");
+
+		Class<? extends ModelStore> modelStoreClazz = loadClass(ModelStore.class, modelStoreConfig);
+
+		try {
+			Constructor<? extends ModelStore> constructor = modelStoreClazz.getDeclaredConstructor(Config.class);
+
+			return constructor.newInstance(config);
+		} catch(ReflectiveOperationException roe){
+			throw new IllegalArgumentException(roe);
+		}
+	}
+
+	static
+	private void restoreModels(Config config, ModelRegistry modelRegistry, ModelLoader modelLoader, ModelStore modelStore){
+		Config modelStoreConfig = config.getConfig("modelStore");
+
+		List<ModelStore.Entry> entries;
+
+		try {
+			entries = modelStore.list();
+		} catch(IOException ioe){
+			throw new RuntimeException(ioe);
+		}
+
+		if(entries.isEmpty()){
+			return;
+		}
+
+		int parallelism = modelStoreConfig.getInt("restoreParallelism");
+		if(parallelism == 0){
+			parallelism = Runtime.getRuntime().availableProcessors();
+		}
+
+		logger.info("Restoring {} model(s) using {} thread(s)", entries.size(), parallelism);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, entries.size())));
+
+		try {
+			List<Future<Model>> futures = new ArrayList<>();
+
+			for(ModelStore.Entry entry : entries){
+				futures.add(executorService.submit(() -> restoreModel(modelRegistry, modelLoader, entry)));
+			}
+
+			for(int i = 0; i < entries.size(); i++){
+				ModelStore.Entry entry = entries.get(i);
+
+				Model model;
+
+				try {
+					model = (futures.get(i)).get();
+				} catch(ExecutionException ee){
+					logger.error("Failed to restore model " + entry, ee.getCause());
+
+					continue;
+				} catch(InterruptedException ie){
+					Thread.currentThread().interrupt();
+
+					throw new RuntimeException(ie);
+				}
+
+				// The registry identifies owners by principal name
+				Principal owner = entry::getOwner;
+
+				modelRegistry.put(new ModelRef(owner, entry.getId()), model);
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	static
+	private Model restoreModel(ModelRegistry modelRegistry, ModelLoader modelLoader, ModelStore.Entry entry) throws Exception {
+		Map<String, Object> properties = entry.getProperties();
+
+		Model model = modelLoader.load(entry::open, entry.getModelName(), (String)properties.get(Model.PROPERTY_FILE_CHECKSUM));
+
+		Collection<Map.Entry<String, Object>> propertyEntries = properties.entrySet();
+		for(Map.Entry<String, Object> propertyEntry : propertyEntries){
+			Object value = propertyEntry.getValue();
+
+			if(value != null){
+				model.putProperty(propertyEntry.getKey(), value);
+			}
+		}
+
+		model.setStoreEntry(entry);
+
+		// Models that were stored by an earlier version have not been measured
+		if(model.getProperty(Model.PROPERTY_HEAP_SIZE) == null){
+			model.estimateHeapSize();
+		}
+
+		// Restored models stay cold until they are accessed for evaluation
+		if(modelRegistry.isLazy()){
+			model.setEvaluatorLoader(modelLoader.createEvaluatorLoader(entry));
+
+			model.evict();
+		}
+
+		return model;
+	}
+
+	static
+	private DeploymentExecutor createDeploymentExecutor(Config config){
+		Config deploymentExecutorConfig = config.getConfig("deploymentExecutor");
+
+		int parallelism = deploymentExecutorConfig.getInt("parallelism");
+		int queueCapacity = deploymentExecutorConfig.getInt("queueCapacity");
+		Duration retention = deploymentExecutorConfig.getDuration("retention");
+
+		DeploymentExecutor deploymentExecutor = new DeploymentExecutor(parallelism, queueCapacity, retention);
+
+		return deploymentExecutor;
+	}
+
+	static
+	private ModelWarmer createModelWarmer(Config config){
+		Config modelWarmerConfig = config.getConfig("modelWarmer");
+
+		int evaluations = modelWarmerConfig.getInt("evaluations");
+		Duration timeout = modelWarmerConfig.getDuration("timeout");
+
+		ModelWarmer modelWarmer = new ModelWarmer(evaluations, timeout);
+
+		return modelWarmer;
+	}
+
+	static
+	private EvaluationExecutor createEvaluationExecutor(Config config){
+		Config evaluationExecutorConfig = config.getConfig("evaluationExecutor");
+
+		int parallelism = evaluationExecutorConfig.getInt("parallelism");
+		int partitionSize = evaluationExecutorConfig.getInt("partitionSize");
+		int chunkSize = evaluationExecutorConfig.getInt("chunkSize");
+
+		EvaluationExecutor evaluationExecutor = new EvaluationExecutor(parallelism, partitionSize, chunkSize);
+
+		return evaluationExecutor;
+	}
+
+	static
+	private EvaluationTracer createEvaluationTracer(Config config){
+		Config evaluationTracerConfig = config.getConfig("evaluationTracer");
+
+		double sampleRate = evaluationTracerConfig.getDouble("sampleRate");
+
+		Map<String, Double> modelSampleRates = new LinkedHashMap<>();
+
+		ConfigObject modelSampleRatesObject = evaluationTracerConfig.getObject("modelSampleRates");
+
+		Collection<Map.Entry<String, ConfigValue>> entries = modelSampleRatesObject.entrySet();
+		for(Map.Entry<String, ConfigValue> entry : entries){
+			ConfigValue value = entry.getValue();
+
+			modelSampleRates.put(entry.getKey(), ((Number)value.unwrapped()).doubleValue());
+		}
+
+		int queueCapacity = evaluationTracerConfig.getInt("queueCapacity");
+
+		EvaluationTracer evaluationTracer = new EvaluationTracer(sampleRate, modelSampleRates, queueCapacity);
+
+		return evaluationTracer;
+	}
+
+	static
+	private ResultCache createResultCache(Config config){
+		Config resultCacheConfig = config.getConfig("resultCache");
+
+		long maximumWeight = resultCacheConfig.getBytes("maximumWeight");
+		Duration expireAfterWrite = resultCacheConfig.getDuration("expireAfterWrite");
+
+		boolean enabled = resultCacheConfig.getBoolean("enabled");
+
+		Map<String, Boolean> modelEnabled = new LinkedHashMap<>();
+
+		ConfigObject modelEnabledObject = resultCacheConfig.getObject("modelEnabled");
+
+		Collection<Map.Entry<String, ConfigValue>> entries = modelEnabledObject.entrySet();
+		for(Map.Entry<String, ConfigValue> entry : entries){
+			ConfigValue value = entry.getValue();
+
+			modelEnabled.put(entry.getKey(), (Boolean)value.unwrapped());
+		}
+
+		ResultCache resultCache = new ResultCache(maximumWeight, expireAfterWrite, enabled, modelEnabled);
+
+		return resultCache;
+	}
+
+	static
+	private MetricRegistry createMetricRegistry(Config config, ModelRegistry modelRegistry){
+		Config metricRegistryConfig = config.getConfig("metricRegistry");
+
+		boolean enabled = metricRegistryConfig.getBoolean("enabled");
+		boolean modelLabels = metricRegistryConfig.getBoolean("modelLabels");
+
+		MetricRegistry metricRegistry = new MetricRegistry(enabled, modelLabels, modelRegistry);
+
+		return metricRegistry;
+	}
+
+	static
+	private ModelRouter createModelRouter(Config config, ModelRegistry modelRegistry){
+		Config modelRouterConfig = config.getConfig("modelRouter");
+
+		int shadowParallelism = modelRouterConfig.getInt("shadowParallelism");
+		int shadowQueueCapacity = modelRouterConfig.getInt("shadowQueueCapacity");
+
+		ModelRouter modelRouter = new ModelRouter(modelRegistry, shadowParallelism, shadowQueueCapacity);
+
+		return modelRouter;
+	}
+
 	static
 	private LoadingModelEvaluatorBuilder createLoadingModelEvaluatorBuilder(Config config){
 		Config modelEvaluatorBuilderConfig = config.getConfig("modelEvaluatorBuilder");
@@ -319,4 +836,6 @@ public class Openscoring extends ResourceConfig {
 			}
 		}
 	}
+
+	private static final Logger logger = LoggerFactory.getLogger(Openscoring.class);
 }
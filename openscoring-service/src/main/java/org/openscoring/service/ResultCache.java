@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.jpmml.evaluator.FieldValue;
+
+/**
+ * <p>
+ * A bounded cache of decoded evaluation results.
+ * </p>
+ *
+ * <p>
+ * Results are keyed by the checksum of the PMML document, the requested model name and the prepared argument values,
+ * so that all models that have been deployed from the same PMML document and model element share cache entries.
+ * Models without a checksum are never cached.
+ * Concurrent lookups of the same missing key evaluate it only once.
+ * </p>
+ */
+public class ResultCache {
+
+	private boolean enabled = false;
+
+	private Map<String, Boolean> modelEnabled = null;
+
+	private Cache<Key, Map<String, ?>> cache = null;
+
+	private ConcurrentMap<List<String>, Counters> counters = new ConcurrentHashMap<>();
+
+
+	/**
+	 * @param maximumWeight The maximum estimated size of cached results in bytes.
+	 * The value 0 means that the cache is disabled.
+	 */
+	public ResultCache(long maximumWeight, Duration expireAfterWrite, boolean enabled, Map<String, Boolean> modelEnabled){
+		this.enabled = enabled;
+		this.modelEnabled = new LinkedHashMap<>(modelEnabled);
+
+		if(maximumWeight < 0L){
+			throw new IllegalArgumentException("Maximum weight must be non-negative");
+		} // End if
+
+		if(maximumWeight > 0L){
+			this.cache = CacheBuilder.newBuilder()
+				.maximumWeight(maximumWeight)
+				.weigher((Key key, Map<String, ?> results) -> (int)Math.min(key.getWeight() + estimateWeight(results), Integer.MAX_VALUE))
+				.expireAfterWrite(expireAfterWrite.toNanos(), TimeUnit.NANOSECONDS)
+				.recordStats()
+				.build();
+		}
+	}
+
+	public boolean isEnabled(String id){
+
+		if(this.cache == null){
+			return false;
+		}
+
+		Boolean modelEnabled = this.modelEnabled.get(id);
+		if(modelEnabled != null){
+			return modelEnabled;
+		}
+
+		return this.enabled;
+	}
+
+	/**
+	 * @param values Prepared argument values, in input field order.
+	 * @param supplier A function that evaluates the prepared argument values on a cache miss.
+	 *
+	 * @return A modifiable copy of the decoded results.
+	 */
+	public Map<String, ?> get(Model model, FieldValue[] values, Supplier<? extends Map<String, ?>> supplier){
+		String checksum = (String)model.getProperty(Model.PROPERTY_FILE_CHECKSUM);
+
+		if(this.cache == null || checksum == null){
+			return supplier.get();
+		}
+
+		String modelName = model.getModelName();
+
+		Key key = new Key(checksum, modelName, values);
+
+		Counters counters = this.counters.computeIfAbsent(Arrays.asList(checksum, modelName), k -> new Counters());
+
+		AtomicReference<Map<String, ?>> loadedResults = new AtomicReference<>();
+
+		Map<String, ?> results;
+
+		try {
+			results = this.cache.get(key, () -> {
+				// Failed evaluations raise an exception, and are therefore never cached
+				Map<String, ?> supplierResults = supplier.get();
+
+				loadedResults.set(supplierResults);
+
+				return Collections.unmodifiableMap(new LinkedHashMap<>(supplierResults));
+			});
+		} catch(ExecutionException | UncheckedExecutionException | ExecutionError e){
+			Throwable cause = e.getCause();
+
+			Throwables.throwIfUnchecked(cause);
+
+			throw new RuntimeException(cause);
+		}
+
+		if(loadedResults.get() != null){
+			counters.missCount.increment();
+
+			return loadedResults.get();
+		}
+
+		counters.hitCount.increment();
+
+		return new LinkedHashMap<>(results);
+	}
+
+	/**
+	 * <p>
+	 * Discards the hit and miss counts of the specified PMML document and model element.
+	 * Should be called after the last model that was deployed from them has been undeployed.
+	 * </p>
+	 */
+	public void removeStats(String checksum, String modelName){
+		this.counters.remove(Arrays.asList(checksum, modelName));
+	}
+
+	/**
+	 * @return Hit and miss counts of the specified model, or <code>null</code> if its results have never been looked up.
+	 */
+	public CacheStats getStats(Model model){
+		String checksum = (String)model.getProperty(Model.PROPERTY_FILE_CHECKSUM);
+
+		Counters counters = (checksum != null ? this.counters.get(Arrays.asList(checksum, model.getModelName())) : null);
+		if(counters == null){
+			return null;
+		}
+
+		return new CacheStats(counters.hitCount.sum(), counters.missCount.sum(), 0L, 0L, 0L, 0L);
+	}
+
+	/**
+	 * @return Aggregated statistics of all models, or <code>null</code> if the cache is disabled.
+	 */
+	public CacheStats getStats(){
+
+		if(this.cache == null){
+			return null;
+		}
+
+		return this.cache.stats();
+	}
+
+	static
+	private long estimateWeight(Map<String, ?> results){
+		long result = 48L;
+
+		Collection<? extends Map.Entry<String, ?>> entries = results.entrySet();
+		for(Map.Entry<String, ?> entry : entries){
+			result += 32L + estimateWeight(entry.getKey()) + estimateWeight(entry.getValue());
+		}
+
+		return result;
+	}
+
+	static
+	private long estimateWeight(Object value){
+
+		if(value == null){
+			return 0L;
+		} else
+
+		if(value instanceof String){
+			String string = (String)value;
+
+			return 40L + 2L * string.length();
+		} else
+
+		if(value instanceof Collection){
+			Collection<?> collection = (Collection<?>)value;
+
+			long result = 32L;
+
+			for(Object element : collection){
+				result += 8L + estimateWeight(element);
+			}
+
+			return result;
+		} else
+
+		if(value instanceof Map){
+			Map<?, ?> map = (Map<?, ?>)value;
+
+			long result = 48L;
+
+			Collection<? extends Map.Entry<?, ?>> entries = map.entrySet();
+			for(Map.Entry<?, ?> entry : entries){
+				result += 32L + estimateWeight(entry.getKey()) + estimateWeight(entry.getValue());
+			}
+
+			return result;
+		} else
+
+		{
+			return 16L;
+		}
+	}
+
+	static
+	private class Key {
+
+		private String checksum = null;
+
+		private String modelName = null;
+
+		private Object[] values = null;
+
+		private int hashCode = 0;
+
+
+		private Key(String checksum, String modelName, FieldValue[] values){
+			this.checksum = checksum;
+			this.modelName = modelName;
+			this.values = new Object[values.length];
+
+			for(int i = 0; i < values.length; i++){
+				FieldValue value = values[i];
+
+				this.values[i] = (value != null ? value.getValue() : null);
+			}
+
+			this.hashCode = 31 * (31 * checksum.hashCode() + Objects.hashCode(modelName)) + Arrays.hashCode(this.values);
+		}
+
+		public long getWeight(){
+			long result = 40L + estimateWeight(this.checksum) + estimateWeight(this.modelName) + 16L;
+
+			for(Object value : this.values){
+				result += 8L + estimateWeight(value);
+			}
+
+			return result;
+		}
+
+		@Override
+		public int hashCode(){
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(Object object){
+
+			if(object instanceof Key){
+				Key that = (Key)object;
+
+				return (this.hashCode == that.hashCode) && Objects.equals(this.checksum, that.checksum) && Objects.equals(this.modelName, that.modelName) && Arrays.equals(this.values, that.values);
+			}
+
+			return false;
+		}
+	}
+
+	static
+	private class Counters {
+
+		private LongAdder hitCount = new LongAdder();
+
+		private LongAdder missCount = new LongAdder();
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service.filters;
+
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.jakarta.rs.cfg.EndpointConfigBase;
+import com.fasterxml.jackson.jakarta.rs.cfg.ObjectWriterInjector;
+import com.fasterxml.jackson.jakarta.rs.cfg.ObjectWriterModifier;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * <p>
+ * Indents JSON response bodies on request.
+ * </p>
+ *
+ * <p>
+ * JSON response bodies are compact by default.
+ * A client may ask for indentation using the <code>indent</code> query parameter (eg. <code>?indent=true</code>),
+ * or the <code>indent</code> parameter of an acceptable JSON media type (eg. <code>Accept: application/json; indent=true</code>).
+ * </p>
+ */
+@Provider
+public class IndentationFilter implements ContainerResponseFilter {
+
+	@Override
+	public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext){
+
+		if(!responseContext.hasEntity() || !isJson(responseContext.getMediaType())){
+			return;
+		} // End if
+
+		if(isIndentRequested(requestContext)){
+			// The modifier is consumed (and cleared) by the Jackson JSON provider on the same thread
+			ObjectWriterInjector.set(IndentationFilter.INDENT_MODIFIER);
+		}
+	}
+
+	static
+	private boolean isIndentRequested(ContainerRequestContext requestContext){
+		MultivaluedMap<String, String> queryParameters = requestContext.getUriInfo().getQueryParameters();
+
+		String indent = queryParameters.getFirst(IndentationFilter.PARAMETER_INDENT);
+		if(indent != null){
+			return Boolean.parseBoolean(indent);
+		}
+
+		List<MediaType> mediaTypes = requestContext.getAcceptableMediaTypes();
+		for(MediaType mediaType : mediaTypes){
+
+			if(isJson(mediaType)){
+				indent = (mediaType.getParameters()).get(IndentationFilter.PARAMETER_INDENT);
+
+				if(indent != null){
+					return Boolean.parseBoolean(indent);
+				}
+			}
+		}
+
+		return false;
+	}
+
+	static
+	private boolean isJson(MediaType mediaType){
+
+		if(mediaType == null){
+			return false;
+		}
+
+		String subtype = mediaType.getSubtype();
+
+		return ("json").equalsIgnoreCase(subtype) || subtype.endsWith("+json");
+	}
+
+	private static final String PARAMETER_INDENT = "indent";
+
+	private static final ObjectWriterModifier INDENT_MODIFIER = new ObjectWriterModifier(){
+
+		@Override
+		public ObjectWriter modify(EndpointConfigBase<?> endpoint, MultivaluedMap<String, Object> responseHeaders, Object valueToWrite, ObjectWriter writer, JsonGenerator generator){
+			return writer.with(SerializationFeature.INDENT_OUTPUT);
+		}
+	};
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service.filters;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.security.Principal;
+
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.ReaderInterceptor;
+import jakarta.ws.rs.ext.ReaderInterceptorContext;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import org.openscoring.service.MetricRegistry;
+import org.openscoring.service.ModelRef;
+import org.openscoring.service.annotations.Endpoint;
+
+/**
+ * <p>
+ * Records the latency and the status code of requests to {@link Endpoint} methods,
+ * together with the duration of the parsing and serialization phases.
+ * </p>
+ *
+ * <p>
+ * If the response has an entity, then the request is considered to be complete after the entity has been written.
+ * </p>
+ */
+@Provider
+@Priority (
+	value = Priorities.USER
+)
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter, ReaderInterceptor, WriterInterceptor {
+
+	@Context
+	private ResourceInfo resourceInfo = null;
+
+	@Context
+	private UriInfo uriInfo = null;
+
+	@Context
+	private SecurityContext securityContext = null;
+
+	private MetricRegistry metricRegistry = null;
+
+
+	@Inject
+	public MetricsFilter(@Named("openscoring") MetricRegistry metricRegistry){
+		this.metricRegistry = metricRegistry;
+	}
+
+	@Override
+	public void filter(ContainerRequestContext requestContext){
+
+		if(!this.metricRegistry.isEnabled()){
+			return;
+		}
+
+		requestContext.setProperty(MetricsFilter.PROPERTY_START, System.nanoTime());
+	}
+
+	@Override
+	public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext){
+		Long start = (Long)requestContext.getProperty(MetricsFilter.PROPERTY_START);
+
+		String family = getFamily();
+		if(start == null || family == null){
+			return;
+		}
+
+		ModelRef modelRef = getModelRef();
+
+		MetricRegistry.Counter counter = this.metricRegistry.getResponseCounter(family, modelRef, responseContext.getStatus());
+
+		counter.increment();
+
+		// Defer to the writer interceptor
+		if(responseContext.hasEntity()){
+			return;
+		}
+
+		MetricRegistry.Histogram histogram = this.metricRegistry.getRequestHistogram(family, modelRef);
+
+		histogram.observeNanos(System.nanoTime() - start);
+	}
+
+	@Override
+	public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+		Long start = (Long)context.getProperty(MetricsFilter.PROPERTY_START);
+
+		String family = getFamily();
+		if(start == null || family == null){
+			return context.proceed();
+		}
+
+		long phaseStart = System.nanoTime();
+
+		try {
+			return context.proceed();
+		} finally {
+			MetricRegistry.Histogram histogram = this.metricRegistry.getPhaseHistogram(family, getModelRef(), MetricRegistry.PHASE_PARSE);
+
+			histogram.observeNanos(System.nanoTime() - phaseStart);
+		}
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		Long start = (Long)context.getProperty(MetricsFilter.PROPERTY_START);
+
+		String family = getFamily();
+		if(start == null || family == null){
+			context.proceed();
+
+			return;
+		}
+
+		ModelRef modelRef = getModelRef();
+
+		long phaseStart = System.nanoTime();
+
+		try {
+			context.proceed();
+		} finally {
+			long end = System.nanoTime();
+
+			MetricRegistry.Histogram phaseHistogram = this.metricRegistry.getPhaseHistogram(family, modelRef, MetricRegistry.PHASE_SERIALIZE);
+
+			phaseHistogram.observeNanos(end - phaseStart);
+
+			MetricRegistry.Histogram histogram = this.metricRegistry.getRequestHistogram(family, modelRef);
+
+			histogram.observeNanos(end - start);
+		}
+	}
+
+	private String getFamily(){
+		Method method = this.resourceInfo.getResourceMethod();
+
+		Endpoint endpoint = (method != null ? method.getAnnotation(Endpoint.class) : null);
+		if(endpoint == null){
+			return null;
+		}
+
+		return (endpoint.family()).name();
+	}
+
+	private ModelRef getModelRef(){
+		String id = (this.uriInfo.getPathParameters()).getFirst("id");
+
+		Principal owner = this.securityContext.getUserPrincipal();
+		if(id == null || owner == null){
+			return null;
+		}
+
+		return new ModelRef(owner, id);
+	}
+
+	private static final String PROPERTY_START = MetricsFilter.class.getName() + ".start";
+}
@@ -71,6 +71,16 @@ public class CsvUtil {
 		return format;
 	}
 
+	static
+	public CsvPreference getFormat(BufferedReader reader, String delimiterChar, String quoteChar) throws IOException {
+
+		if(delimiterChar != null){
+			return getFormat(delimiterChar, quoteChar);
+		}
+
+		return getFormat(reader);
+	}
+
 	static
 	public CsvPreference getFormat(BufferedReader reader) throws IOException {
 		reader.mark(10 * 1024);
@@ -138,18 +148,47 @@ public class CsvUtil {
 	public TableEvaluationRequest readTable(BufferedReader reader, CsvPreference format) throws IOException {
 		CsvMapReader parser = new CsvMapReader(reader, format);
 
+		TableEvaluationRequest tableRequest = readHeader(parser);
+
+		List<EvaluationRequest> requests = readRequests(parser, tableRequest, Integer.MAX_VALUE);
+
+		tableRequest.setRequests(requests);
+
+		parser.close();
+
+		return tableRequest;
+	}
+
+	static
+	public TableEvaluationRequest readHeader(CsvMapReader parser) throws IOException {
 		String[] header = parser.getHeader(true);
+		if(header == null){
+			throw new IOException("Missing CSV header");
+		}
 
 		List<String> columns = Arrays.asList(header);
 
 		TableEvaluationRequest tableRequest = new TableEvaluationRequest()
 			.setColumns(columns);
 
+		return tableRequest;
+	}
+
+	/**
+	 * @param limit The maximum number of rows to read.
+	 *
+	 * @return A list of evaluation requests. An empty list indicates the end of the CSV document.
+	 */
+	static
+	public List<EvaluationRequest> readRequests(CsvMapReader parser, TableEvaluationRequest tableRequest, int limit) throws IOException {
 		String idColumn = tableRequest.getIdColumn();
+		List<String> columns = tableRequest.getColumns();
+
+		String[] header = columns.toArray(new String[columns.size()]);
 
 		List<EvaluationRequest> requests = new ArrayList<>();
 
-		while(true){
+		while(requests.size() < limit){
 			Map<String, String> row = parser.read(header);
 			if(row == null){
 				break;
@@ -167,26 +206,34 @@ public class CsvUtil {
 			requests.add(request);
 		}
 
-		tableRequest.setRequests(requests);
-
-		parser.close();
-
-		return tableRequest;
+		return requests;
 	}
 
-	@SuppressWarnings({"rawtypes", "unchecked"})
 	static
 	public void writeTable(TableEvaluationResponse tableResponse, BufferedWriter writer, CsvPreference format) throws IOException {
 		CsvMapWriter formatter = new CsvMapWriter(writer, format);
 
-		String idColumn = tableResponse.getIdColumn();
+		writeHeader(formatter, tableResponse);
+		writeResponses(formatter, tableResponse, tableResponse.getResponses());
+
+		formatter.flush();
+		formatter.close();
+	}
+
+	static
+	public void writeHeader(CsvMapWriter formatter, TableEvaluationResponse tableResponse) throws IOException {
 		List<String> columns = tableResponse.getColumns();
 
-		String[] header = columns.toArray(new String[columns.size()]);
+		formatter.writeHeader(columns.toArray(new String[columns.size()]));
+	}
 
-		formatter.writeHeader(header);
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	static
+	public void writeResponses(CsvMapWriter formatter, TableEvaluationResponse tableResponse, List<EvaluationResponse> responses) throws IOException {
+		String idColumn = tableResponse.getIdColumn();
+		List<String> columns = tableResponse.getColumns();
 
-		List<EvaluationResponse> responses = tableResponse.getResponses();
+		String[] header = columns.toArray(new String[columns.size()]);
 
 		for(EvaluationResponse response : responses){
 			Map<String, Object> row = (Map)response.getResults();
@@ -197,9 +244,6 @@ public class CsvUtil {
 
 			formatter.write(row, header);
 		}
-
-		formatter.flush();
-		formatter.close();
 	}
 
 	static
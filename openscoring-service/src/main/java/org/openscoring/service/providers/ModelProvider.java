@@ -23,36 +23,39 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.xml.transform.Result;
 import javax.xml.transform.stream.StreamResult;
 
-import com.google.common.hash.Hashing;
-import com.google.common.hash.HashingInputStream;
-import com.google.common.io.CountingInputStream;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.FileBackedOutputStream;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.InternalServerErrorException;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.ServiceUnavailableException;
+import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
 import jakarta.ws.rs.ext.MessageBodyReader;
 import jakarta.ws.rs.ext.MessageBodyWriter;
 import jakarta.ws.rs.ext.Provider;
 import jakarta.xml.bind.JAXBException;
-import org.dmg.pmml.Header;
 import org.dmg.pmml.PMML;
 import org.jpmml.evaluator.Evaluator;
-import org.jpmml.evaluator.EvaluatorBuilder;
-import org.jpmml.evaluator.HasModel;
 import org.jpmml.evaluator.HasPMML;
-import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
 import org.jpmml.model.JAXBSerializer;
+import org.openscoring.service.DeploymentExecutor;
+import org.openscoring.service.LimitedInputStream;
 import org.openscoring.service.Model;
+import org.openscoring.service.ModelLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
@@ -65,12 +68,15 @@ public class ModelProvider implements MessageBodyReader<Model>, MessageBodyWrite
 	@Context
 	private UriInfo uriInfo = null;
 
-	private LoadingModelEvaluatorBuilder modelEvaluatorBuilder = null;
+	private ModelLoader modelLoader = null;
+
+	private DeploymentExecutor deploymentExecutor = null;
 
 
 	@Inject
-	public ModelProvider(LoadingModelEvaluatorBuilder modelEvaluatorBuilder){
-		this.modelEvaluatorBuilder = modelEvaluatorBuilder;
+	public ModelProvider(ModelLoader modelLoader, DeploymentExecutor deploymentExecutor){
+		this.modelLoader = modelLoader;
+		this.deploymentExecutor = deploymentExecutor;
 	}
 
 	@Override
@@ -89,50 +95,54 @@ public class ModelProvider implements MessageBodyReader<Model>, MessageBodyWrite
 
 		String modelName = queryParameters.getFirst("modelName");
 
-		CountingInputStream countingIs = new CountingInputStream(entityStream);
-
-		HashingInputStream hashingIs = new HashingInputStream(Hashing.sha256(), countingIs);
-
-		EvaluatorBuilder evaluatorBuilder;
-
-		try {
-			evaluatorBuilder = this.modelEvaluatorBuilder.clone()
-				.load(hashingIs, modelName);
-		} catch(SAXException | JAXBException e){
-			logger.error("Failed to load the PMML document", e);
-
-			throw new BadRequestException(e);
-		} catch(/*PMML*/Exception pe){
-			logger.error("Failed to find a scorable model element", pe);
+		// Fail fast, before receiving a possibly large PMML document
+		if(this.deploymentExecutor.isSaturated()){
+			logger.error("Too many concurrent deployments");
 
-			throw new BadRequestException(pe);
+			throw new ServiceUnavailableException("Too many concurrent deployments");
 		}
 
-		Evaluator evaluator;
+		InputStream is = this.modelLoader.limitUpload(entityStream);
+
+		// The PMML document is received on the request thread, so that a slow client does not hold on to a loader thread
+		FileBackedOutputStream spoolOs = new FileBackedOutputStream(this.modelLoader.getSpoolThreshold());
 
 		try {
-			evaluator = evaluatorBuilder.build();
+			try {
+				ByteStreams.copy(is, spoolOs);
+			} catch(IOException ioe){
+				checkUploadSize(is, ioe);
 
-			evaluator.verify();
-		} catch(/*PMML*/Exception pe){
-			logger.error("Failed to build a model evaluator", pe);
+				logger.error("Failed to receive the PMML document", ioe);
 
-			throw new BadRequestException(pe);
-		}
+				throw new BadRequestException(ioe);
+			}
 
-		Model model = new Model(evaluator);
-		model.putProperty(Model.PROPERTY_FILE_SIZE, countingIs.getCount());
-		model.putProperty(Model.PROPERTY_FILE_CHECKSUM, (hashingIs.hash()).toString());
+			ByteSource byteSource = spoolOs.asByteSource();
 
-		HasModel<?> hasModel = (HasModel<?>)evaluator;
+			Model model;
 
-		PMML pmml = hasModel.getPMML();
+			try {
+				model = this.deploymentExecutor.execute(() -> this.modelLoader.load(byteSource, modelName));
+			} catch(RejectedExecutionException ree){
+				logger.error("Too many concurrent deployments", ree);
 
-		Header header = pmml.getHeader();
+				throw new ServiceUnavailableException("Too many concurrent deployments");
+			} catch(SAXException | JAXBException e){
+				logger.error("Failed to load the PMML document", e);
 
-		model.putProperty(Model.PROPERTY_MODEL_VERSION, header != null ? header.getModelVersion() : null);
+				throw new BadRequestException(e);
+			} catch(/*PMML*/Exception pe){
+				logger.error("Failed to build a model evaluator", pe);
 
-		return model;
+				throw new BadRequestException(pe);
+			}
+
+			return model;
+		} finally {
+			// Deletes the temporary file (if any)
+			spoolOs.reset();
+		}
 	}
 
 	@Override
@@ -157,5 +167,15 @@ public class ModelProvider implements MessageBodyReader<Model>, MessageBodyWrite
 		}
 	}
 
+	private void checkUploadSize(InputStream is, Exception e){
+
+		// The failure of the limited stream is typically wrapped into a parser exception
+		if(is instanceof LimitedInputStream && ((LimitedInputStream)is).isExceeded()){
+			logger.error("The PMML document is too large", e);
+
+			throw new WebApplicationException("The PMML document exceeds " + this.modelLoader.getMaxUploadSize() + " bytes", Response.Status.REQUEST_ENTITY_TOO_LARGE);
+		}
+	}
+
 	private static final Logger logger = LoggerFactory.getLogger(ModelProvider.class);
 }
\ No newline at end of file
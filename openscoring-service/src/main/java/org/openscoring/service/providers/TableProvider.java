@@ -91,15 +91,7 @@ public class TableProvider implements MessageBodyReader<TableEvaluationRequest>,
 		TableEvaluationRequest tableRequest;
 
 		try {
-			CsvPreference format;
-
-			if(delimiterChar != null){
-				format = CsvUtil.getFormat(delimiterChar, quoteChar);
-			} else
-
-			{
-				format = CsvUtil.getFormat(reader);
-			}
+			CsvPreference format = CsvUtil.getFormat(reader, delimiterChar, quoteChar);
 
 			tableRequest = CsvUtil.readTable(reader, format);
 
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2020 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service.visitors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.dmg.pmml.DataDictionary;
+import org.dmg.pmml.DataField;
+import org.dmg.pmml.Model;
+import org.dmg.pmml.PMML;
+import org.dmg.pmml.PMMLObject;
+import org.dmg.pmml.Value;
+import org.dmg.pmml.Visitable;
+import org.dmg.pmml.VisitorAction;
+import org.jpmml.model.visitors.AbstractVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A Visitor that shares equal PMML sub-objects between all PMML documents that are loaded by this JVM.
+ * </p>
+ *
+ * <p>
+ * The data dictionary, transformation dictionary, and the mining schema, local transformations, targets and output elements of every model
+ * are replaced with an earlier loaded equal object, if there is one.
+ * Two objects are considered equal if their Java serialization forms are equal.
+ * When a data dictionary is not shared as a whole, then its data fields and their values are shared individually,
+ * provided that the containing lists are still modifiable.
+ * </p>
+ *
+ * <p>
+ * Shared objects must not be modified afterwards.
+ * This Visitor must therefore be applied after all other Visitors (ie. be the last entry of the <code>visitorClasses</code> list),
+ * and only when the model evaluator builder is not mutable.
+ * Shared objects are weakly referenced, and are forgotten when no loaded PMML document is holding on to them.
+ * </p>
+ *
+ * <p>
+ * Every candidate object is serialized and hashed (SHA-256) once per load, so the cost of this Visitor grows linearly with the size of the candidate objects.
+ * Large transformation dictionaries make the deployment correspondingly slower, but do not affect evaluation.
+ * The outcome of the most recent application to a PMML document is available via {@link #getSavings(PMML)}.
+ * </p>
+ */
+public class PMMLObjectInterner extends AbstractVisitor {
+
+	private int count = 0;
+
+	private long size = 0L;
+
+
+	@Override
+	public void applyTo(Visitable visitable){
+		this.count = 0;
+		this.size = 0L;
+
+		super.applyTo(visitable);
+
+		if(visitable instanceof PMML){
+			PMMLObjectInterner.savings.put((PMML)visitable, new Savings(this.count, this.size));
+		} // End if
+
+		if(this.count > 0){
+			logger.info("Shared {} PMML object(s) with previously loaded PMML documents, saving approximately {} bytes", this.count, this.size);
+		}
+	}
+
+	@Override
+	public VisitorAction visit(PMML pmml){
+		pmml.setDataDictionary(intern(pmml.getDataDictionary(), this::internDataFields));
+		pmml.setTransformationDictionary(intern(pmml.getTransformationDictionary()));
+
+		return super.visit(pmml);
+	}
+
+	@Override
+	public VisitorAction visit(Model model){
+		model.setMiningSchema(intern(model.getMiningSchema()));
+		model.setLocalTransformations(intern(model.getLocalTransformations()));
+		model.setTargets(intern(model.getTargets()));
+		model.setOutput(intern(model.getOutput()));
+
+		return super.visit(model);
+	}
+
+	public int getCount(){
+		return this.count;
+	}
+
+	public long getSize(){
+		return this.size;
+	}
+
+	private void internDataFields(DataDictionary dataDictionary){
+
+		if(!dataDictionary.hasDataFields()){
+			return;
+		}
+
+		List<DataField> dataFields = dataDictionary.getDataFields();
+		if(!isModifiable(dataFields)){
+			return;
+		}
+
+		for(int i = 0; i < dataFields.size(); i++){
+			DataField dataField = dataFields.get(i);
+
+			dataFields.set(i, intern(dataField, this::internValues));
+		}
+	}
+
+	private void internValues(DataField dataField){
+
+		if(!dataField.hasValues()){
+			return;
+		}
+
+		List<Value> values = dataField.getValues();
+		if(!isModifiable(values)){
+			return;
+		}
+
+		for(int i = 0; i < values.size(); i++){
+			Value value = values.get(i);
+
+			// Values are numerous and simple, so they are keyed by their attributes rather than by their serialization form
+			if(value.hasExtensions()){
+				continue;
+			}
+
+			List<?> key = Arrays.asList(value.getValue(), value.getProperty(), value.getDisplayValue());
+
+			Value sharedValue = (PMMLObjectInterner.values.asMap()).putIfAbsent(key, value);
+			if(sharedValue != null && sharedValue != value){
+				values.set(i, sharedValue);
+
+				this.count++;
+				this.size += VALUE_SIZE;
+			}
+		}
+	}
+
+	private <E extends PMMLObject> E intern(E object){
+		return intern(object, null);
+	}
+
+	/**
+	 * @param childInterner A function that shares the children of an object that is seen for the first time, or <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	private <E extends PMMLObject> E intern(E object, Consumer<E> childInterner){
+
+		if(object == null){
+			return null;
+		}
+
+		byte[] bytes;
+
+		try {
+			bytes = serialize(object);
+		} catch(IOException ioe){
+			logger.warn("Failed to serialize " + object, ioe);
+
+			return object;
+		}
+
+		HashCode key = Hashing.sha256().hashBytes(bytes);
+
+		PMMLObject sharedObject = PMMLObjectInterner.objects.getIfPresent(key);
+		if(sharedObject == null){
+
+			// The object is still private to this PMML document, so its children may be replaced
+			if(childInterner != null){
+				childInterner.accept(object);
+			}
+
+			sharedObject = (PMMLObjectInterner.objects.asMap()).putIfAbsent(key, object);
+			if(sharedObject == null){
+				return object;
+			}
+		} // End if
+
+		if(sharedObject == object){
+			return object;
+		}
+
+		this.count++;
+		this.size += bytes.length;
+
+		return (E)sharedObject;
+	}
+
+	/**
+	 * @return The outcome of sharing the sub-objects of the specified PMML document,
+	 * or <code>null</code> if this Visitor has not been applied to it.
+	 */
+	static
+	public Savings getSavings(PMML pmml){
+		return PMMLObjectInterner.savings.getIfPresent(pmml);
+	}
+
+	/**
+	 * @return A snapshot of the currently shared PMML objects.
+	 */
+	static
+	public List<Object> getSharedObjects(){
+		List<Object> result = new ArrayList<>();
+		result.addAll((PMMLObjectInterner.objects.asMap()).values());
+		result.addAll((PMMLObjectInterner.values.asMap()).values());
+
+		return result;
+	}
+
+	static
+	private byte[] serialize(PMMLObject object) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		try(ObjectOutputStream oos = new ObjectOutputStream(os)){
+			oos.writeObject(object);
+		}
+
+		return os.toByteArray();
+	}
+
+	/**
+	 * <p>
+	 * Lists that have been finalized by other Visitors are read-only.
+	 * </p>
+	 */
+	static
+	private <E> boolean isModifiable(List<E> list){
+
+		if(list.isEmpty()){
+			return false;
+		}
+
+		try {
+			list.set(0, list.get(0));
+
+			return true;
+		} catch(UnsupportedOperationException uoe){
+			return false;
+		}
+	}
+
+	private static final Cache<HashCode, PMMLObject> objects = CacheBuilder.newBuilder()
+		.weakValues()
+		.build();
+
+	private static final Cache<List<?>, Value> values = CacheBuilder.newBuilder()
+		.weakValues()
+		.build();
+
+	private static final Cache<PMML, Savings> savings = CacheBuilder.newBuilder()
+		.weakKeys()
+		.build();
+
+	/**
+	 * The approximate shallow size of a {@link Value} object, in bytes.
+	 */
+	private static final long VALUE_SIZE = 32L;
+
+	private static final Logger logger = LoggerFactory.getLogger(PMMLObjectInterner.class);
+
+	static
+	public class Savings {
+
+		private int count = 0;
+
+		private long size = 0L;
+
+
+		private Savings(int count, long size){
+			this.count = count;
+			this.size = size;
+		}
+
+		/**
+		 * @return The number of PMML objects that were replaced with shared ones.
+		 */
+		public int getCount(){
+			return this.count;
+		}
+
+		/**
+		 * @return The approximate number of bytes saved.
+		 */
+		public long getSize(){
+			return this.size;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.cache.CacheStats;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.FieldValue;
+import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import org.junit.jupiter.api.Test;
+import org.openscoring.common.EvaluationRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ArgumentBinderTest {
+
+	@Test
+	public void bind() throws Exception {
+		Evaluator evaluator = loadEvaluator("DecisionTreeIris");
+
+		ArgumentBinder argumentBinder = new ArgumentBinder(evaluator);
+
+		assertEquals(4, argumentBinder.size());
+
+		Map<String, Object> requestArguments = new LinkedHashMap<>();
+		requestArguments.put("Sepal_Length", 5.1d);
+		requestArguments.put("Sepal_Width", 3.5d);
+		requestArguments.put("Petal_Length", 1.4d);
+
+		EvaluationRequest request = new EvaluationRequest("1")
+			.setArguments(requestArguments);
+
+		Map<String, FieldValue> arguments = argumentBinder.bind(request);
+
+		assertEquals(4, arguments.size());
+
+		List<String> names = Arrays.asList("Sepal_Length", "Sepal_Width", "Petal_Length", "Petal_Width");
+
+		assertEquals(names, Arrays.asList(arguments.keySet().toArray()));
+
+		assertEquals(1.4d, arguments.get("Petal_Length").getValue());
+
+		assertTrue(arguments.containsKey("Petal_Width"));
+		assertNull(arguments.get("Petal_Width"));
+
+		assertFalse(arguments.containsKey("Species"));
+		assertNull(arguments.get("Species"));
+	}
+
+	@Test
+	public void bindCached() throws Exception {
+		Evaluator evaluator = loadEvaluator("LinearRegressionAuto");
+
+		ArgumentBinder argumentBinder = new ArgumentBinder(evaluator);
+
+		assertNull(argumentBinder.getValueCacheStats());
+
+		argumentBinder = new ArgumentBinder(evaluator, 16);
+
+		Map<String, Object> requestArguments = new LinkedHashMap<>();
+		requestArguments.put("cylinders", "8");
+		requestArguments.put("displacement", 307d);
+		requestArguments.put("horsepower", 130d);
+		requestArguments.put("weight", 3504d);
+		requestArguments.put("acceleration", 12d);
+		requestArguments.put("model_year", "70");
+		requestArguments.put("origin", "1");
+
+		EvaluationRequest request = new EvaluationRequest("1")
+			.setArguments(requestArguments);
+
+		Map<String, FieldValue> arguments = argumentBinder.bind(request);
+
+		CacheStats valueCacheStats = argumentBinder.getValueCacheStats();
+
+		assertEquals(0L, valueCacheStats.hitCount());
+		assertEquals(3L, valueCacheStats.missCount());
+
+		Map<String, FieldValue> cachedArguments = argumentBinder.bind(request);
+
+		valueCacheStats = argumentBinder.getValueCacheStats();
+
+		assertEquals(3L, valueCacheStats.hitCount());
+		assertEquals(3L, valueCacheStats.missCount());
+
+		assertSame(arguments.get("cylinders"), cachedArguments.get("cylinders"));
+		assertNotSame(arguments.get("displacement"), cachedArguments.get("displacement"));
+	}
+
+	static
+	private Evaluator loadEvaluator(String name) throws Exception {
+
+		try(InputStream is = ArgumentBinderTest.class.getResourceAsStream("/pmml/" + name + ".pmml")){
+			return new LoadingModelEvaluatorBuilder()
+				.load(is)
+				.build();
+		}
+	}
+}
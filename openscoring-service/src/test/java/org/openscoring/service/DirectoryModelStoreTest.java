@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DirectoryModelStoreTest {
+
+	@Test
+	public void storeAndRestore(@TempDir Path directory) throws Exception {
+		Config config = ConfigFactory.parseMap(Collections.singletonMap("modelStore.directory", directory.toString()));
+
+		DirectoryModelStore modelStore = new DirectoryModelStore(config);
+
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L);
+
+		Model model;
+
+		try(InputStream is = DirectoryModelStoreTest.class.getResourceAsStream("/pmml/DecisionTreeIris.pmml")){
+			model = modelLoader.load(is, null);
+		}
+
+		Principal owner = () -> null;
+
+		ModelRef modelRef = new ModelRef(owner, "DecisionTreeIris");
+
+		modelStore.store(modelRef, model);
+
+		// Redeployment replaces the PMML file
+		modelStore.store(modelRef, model);
+
+		assertEquals(2, countFiles(directory.resolve("_")));
+
+		List<ModelStore.Entry> entries = modelStore.list();
+
+		assertEquals(1, entries.size());
+
+		ModelStore.Entry entry = entries.get(0);
+
+		assertNull(entry.getOwner());
+		assertEquals("DecisionTreeIris", entry.getId());
+		assertEquals(model.getProperties().get(Model.PROPERTY_FILE_CHECKSUM), entry.getProperties().get(Model.PROPERTY_FILE_CHECKSUM));
+		assertTrue(Files.isRegularFile(entry.getFile()));
+		assertEquals((MoreFiles.asByteSource(entry.getFile()).hash(Hashing.sha256())).toString(), entry.getFileChecksum());
+
+		Model restoredModel;
+
+		try(InputStream is = entry.open()){
+			restoredModel = modelLoader.load(is, entry.getModelName());
+		}
+
+		assertEquals(model.getMiningFunction(), restoredModel.getMiningFunction());
+		assertEquals(model.getSummary(), restoredModel.getSummary());
+
+		modelStore.delete(modelRef);
+
+		assertTrue(modelStore.list().isEmpty());
+		assertEquals(0, countFiles(directory.resolve("_")));
+	}
+
+	@Test
+	public void restoreSnapshot(@TempDir Path directory) throws Exception {
+		Config config = ConfigFactory.parseMap(Collections.singletonMap("modelStore.directory", (directory.resolve("store")).toString()));
+
+		DirectoryModelStore modelStore = new DirectoryModelStore(config);
+
+		Path snapshotDirectory = directory.resolve("snapshots");
+
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L, snapshotDirectory, "1");
+
+		Model model;
+
+		// Deployed without the modelName query parameter
+		try(InputStream is = DirectoryModelStoreTest.class.getResourceAsStream("/pmml/DecisionTreeIris.pmml")){
+			model = modelLoader.load(is, null);
+		}
+
+		assertEquals(1, countFiles(snapshotDirectory));
+
+		Principal owner = () -> null;
+
+		modelStore.store(new ModelRef(owner, "DecisionTreeIris"), model);
+
+		List<ModelStore.Entry> entries = modelStore.list();
+
+		assertEquals(1, entries.size());
+
+		ModelStore.Entry entry = entries.get(0);
+
+		assertNull(entry.getModelName());
+
+		ModelLoader.StreamSupplier failingSupplier = () -> {
+			throw new IOException();
+		};
+
+		// The PMML file is not read, because the snapshot is hit
+		Model restoredModel = modelLoader.load(failingSupplier, entry.getModelName(), (String)entry.getProperties().get(Model.PROPERTY_FILE_CHECKSUM));
+
+		assertEquals(model.getSummary(), restoredModel.getSummary());
+
+		assertEquals(1, countFiles(snapshotDirectory));
+	}
+
+	@Test
+	public void storeOwners(@TempDir Path directory) throws Exception {
+		Config config = ConfigFactory.parseMap(Collections.singletonMap("modelStore.directory", directory.toString()));
+
+		DirectoryModelStore modelStore = new DirectoryModelStore(config);
+
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L);
+
+		Model model;
+
+		try(InputStream is = DirectoryModelStoreTest.class.getResourceAsStream("/pmml/DecisionTreeIris.pmml")){
+			model = modelLoader.load(is, null);
+		}
+
+		String[] names = {null, "_", ".", "..", "../..", "a/b"};
+
+		for(String name : names){
+			Principal owner = () -> name;
+
+			ModelStore.Entry entry = modelStore.store(new ModelRef(owner, "DecisionTreeIris"), model);
+
+			assertTrue((entry.getFile()).startsWith(directory));
+		}
+
+		assertEquals(names.length, countFiles(directory));
+
+		Set<String> owners = new HashSet<>();
+
+		List<ModelStore.Entry> entries = modelStore.list();
+		for(ModelStore.Entry entry : entries){
+			owners.add(entry.getOwner());
+		}
+
+		assertEquals(new HashSet<>(Arrays.asList(names)), owners);
+	}
+
+	static
+	private long countFiles(Path directory) throws Exception {
+
+		try(Stream<Path> files = Files.list(directory)){
+			return files.count();
+		}
+	}
+}
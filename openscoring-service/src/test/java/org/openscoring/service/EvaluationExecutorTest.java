@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.openscoring.common.EvaluationRequest;
+import org.openscoring.common.EvaluationResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class EvaluationExecutorTest {
+
+	@Test
+	public void execute() throws Exception {
+		EvaluationExecutor evaluationExecutor = new EvaluationExecutor(4, 3);
+
+		assertEquals(4, evaluationExecutor.getParallelism());
+
+		List<EvaluationRequest> requests = createRequests(100);
+
+		Function<EvaluationRequest, EvaluationResponse> function = (request) -> {
+			int index = Integer.parseInt(request.getId());
+
+			if(index % 10 == 9){
+				throw new IllegalArgumentException(request.getId());
+			}
+
+			return new EvaluationResponse(request.getId());
+		};
+
+		try {
+			List<EvaluationResponse> responses = evaluationExecutor.execute(requests, function, false);
+
+			assertEquals(requests.size(), responses.size());
+
+			for(int i = 0; i < responses.size(); i++){
+				EvaluationResponse response = responses.get(i);
+
+				assertEquals(String.valueOf(i), response.getId());
+
+				if(i % 10 == 9){
+					assertNotNull(response.getMessage());
+				} else
+
+				{
+					assertNull(response.getMessage());
+				}
+			}
+
+			IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> evaluationExecutor.execute(requests, function, true));
+
+			assertEquals(9, Integer.parseInt(exception.getMessage()) % 10);
+		} finally {
+			evaluationExecutor.shutdown();
+		}
+	}
+
+	@Test
+	public void executeSequential() throws Exception {
+		EvaluationExecutor evaluationExecutor = new EvaluationExecutor(1, 3);
+
+		assertEquals(1, evaluationExecutor.getParallelism());
+
+		List<EvaluationRequest> requests = createRequests(10);
+
+		Thread thread = Thread.currentThread();
+
+		Function<EvaluationRequest, EvaluationResponse> function = (request) -> {
+			assertSame(thread, Thread.currentThread());
+
+			if(("5").equals(request.getId())){
+				throw new IllegalArgumentException();
+			} else
+
+			if(Integer.parseInt(request.getId()) > 5){
+				fail();
+			}
+
+			return new EvaluationResponse(request.getId());
+		};
+
+		assertThrows(IllegalArgumentException.class, () -> evaluationExecutor.execute(requests, function, true));
+	}
+
+	@Test
+	public void executeSequentialPartitions() throws Exception {
+		EvaluationExecutor evaluationExecutor = new EvaluationExecutor(1, 3);
+
+		// Many times larger than the partition size
+		List<EvaluationRequest> requests = createRequests(100);
+
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+		Function<EvaluationRequest, EvaluationResponse> function = (request) -> {
+			threads.add(Thread.currentThread());
+
+			return new EvaluationResponse(request.getId());
+		};
+
+		List<EvaluationResponse> responses = evaluationExecutor.execute(requests, function, true);
+
+		assertEquals(requests.size(), responses.size());
+		assertEquals(Collections.singleton(Thread.currentThread()), threads);
+	}
+
+	static
+	private List<EvaluationRequest> createRequests(int size){
+		List<EvaluationRequest> result = new ArrayList<>();
+
+		for(int i = 0; i < size; i++){
+			result.add(new EvaluationRequest(String.valueOf(i)));
+		}
+
+		return result;
+	}
+}
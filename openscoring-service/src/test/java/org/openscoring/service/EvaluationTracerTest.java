@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class EvaluationTracerTest {
+
+	@Test
+	public void getSampleRate(){
+		Map<String, Double> modelSampleRates = new LinkedHashMap<>();
+		modelSampleRates.put("com.mycompany.Test", 0.5d);
+		modelSampleRates.put("alice/com.mycompany.Test", 1d);
+
+		EvaluationTracer evaluationTracer = new EvaluationTracer(0d, modelSampleRates, 10);
+
+		Principal anonymous = () -> null;
+		Principal alice = () -> "alice";
+		Principal bob = () -> "bob";
+
+		try {
+			assertEquals(0.5d, evaluationTracer.getSampleRate(new ModelRef(anonymous, "com.mycompany.Test")));
+			assertEquals(1d, evaluationTracer.getSampleRate(new ModelRef(alice, "com.mycompany.Test")));
+			assertEquals(0.5d, evaluationTracer.getSampleRate(new ModelRef(bob, "com.mycompany.Test")));
+			assertEquals(0d, evaluationTracer.getSampleRate(new ModelRef(alice, "Test")));
+		} finally {
+			evaluationTracer.shutdown();
+		}
+
+		assertThrows(IllegalArgumentException.class, () -> new EvaluationTracer(1.5d, Collections.emptyMap(), 10));
+		assertThrows(IllegalArgumentException.class, () -> new EvaluationTracer(0d, Collections.singletonMap("Test", -1d), 10));
+	}
+}
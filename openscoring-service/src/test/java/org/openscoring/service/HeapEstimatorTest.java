@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HeapEstimatorTest {
+
+	@Test
+	public void estimate(){
+		assertEquals(16L + 10 * 4, HeapEstimator.estimate(new int[10]));
+
+		String string = "abc";
+
+		long stringSize = HeapEstimator.estimate(string);
+
+		// Every object is counted once
+		assertEquals(stringSize, HeapEstimator.estimate(string, string));
+		assertEquals((16L + 2 * 4) + stringSize, HeapEstimator.estimate((Object)new Object[]{string, string}));
+
+		// Shared objects are not counted
+		assertEquals(0L, HeapEstimator.estimate(HeapEstimator.class, TimeUnit.SECONDS));
+	}
+}
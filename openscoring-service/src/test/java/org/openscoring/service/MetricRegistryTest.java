@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.security.Principal;
+
+import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricRegistryTest {
+
+	@Test
+	public void write() throws Exception {
+		MetricRegistry metricRegistry = new MetricRegistry(true, false, null);
+
+		ModelRef modelRef = new ModelRef(() -> null, "Test");
+
+		MetricRegistry.Counter counter = metricRegistry.getResponseCounter("EVALUATION", modelRef, 200);
+
+		assertSame(counter, metricRegistry.getResponseCounter("EVALUATION", modelRef, 200));
+
+		counter.increment();
+		counter.increment();
+
+		MetricRegistry.Histogram histogram = metricRegistry.getHistogram("test_seconds", "Test", new double[]{0.5, 1}, "label", "\"value\"");
+
+		histogram.observe(0.25);
+		histogram.observe(0.75);
+		histogram.observe(2);
+
+		assertEquals(3, histogram.getCount());
+
+		StringWriter writer = new StringWriter();
+
+		metricRegistry.write(writer);
+
+		String string = writer.toString();
+
+		// Model labels are disabled
+		assertTrue(string.contains("openscoring_responses_total{family=\"EVALUATION\",status=\"200\"} 2\n"));
+
+		assertTrue(string.contains("# TYPE test_seconds histogram\n"));
+		assertTrue(string.contains("test_seconds_bucket{label=\"\\\"value\\\"\",le=\"0.5\"} 1\n"));
+		assertTrue(string.contains("test_seconds_bucket{label=\"\\\"value\\\"\",le=\"1\"} 2\n"));
+		assertTrue(string.contains("test_seconds_bucket{label=\"\\\"value\\\"\",le=\"+Inf\"} 3\n"));
+		assertTrue(string.contains("test_seconds_sum{label=\"\\\"value\\\"\"} 3\n"));
+		assertTrue(string.contains("test_seconds_count{label=\"\\\"value\\\"\"} 3\n"));
+
+		metricRegistry = new MetricRegistry(false, true, new ModelRegistry());
+
+		assertNull(metricRegistry.getResponseCounter("EVALUATION", modelRef, 200));
+	}
+
+	@Test
+	public void modelLabels() throws Exception {
+		ModelRegistry modelRegistry = new ModelRegistry();
+
+		MetricRegistry metricRegistry = new MetricRegistry(true, true, modelRegistry);
+
+		Principal owner = () -> "owner";
+
+		ModelRef modelRef = new ModelRef(owner, "DecisionTreeIris");
+
+		// Not deployed yet
+		metricRegistry.getResponseCounter("EVALUATION", modelRef, 404).increment();
+		metricRegistry.getResponseCounter("EVALUATION", new ModelRef(owner, "Unknown"), 404).increment();
+
+		Model model;
+
+		try(InputStream is = MetricRegistryTest.class.getResourceAsStream("/pmml/DecisionTreeIris.pmml")){
+			model = (new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L)).load(is, null);
+		}
+
+		modelRegistry.swap(modelRef, model);
+
+		metricRegistry.getResponseCounter("EVALUATION", modelRef, 200).increment();
+
+		String string = write(metricRegistry);
+
+		assertTrue(string.contains("openscoring_responses_total{family=\"EVALUATION\",model=\"_unknown\",status=\"404\"} 2\n"));
+		assertTrue(string.contains("openscoring_responses_total{family=\"EVALUATION\",owner=\"owner\",model=\"DecisionTreeIris\",status=\"200\"} 1\n"));
+
+		metricRegistry.removeModel(modelRef);
+
+		string = write(metricRegistry);
+
+		assertTrue(string.contains("model=\"_unknown\""));
+		assertFalse(string.contains("model=\"DecisionTreeIris\""));
+	}
+
+	static
+	private String write(MetricRegistry metricRegistry) throws Exception {
+		StringWriter writer = new StringWriter();
+
+		metricRegistry.write(writer);
+
+		return writer.toString();
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ModelLoaderTest {
+
+	@Test
+	public void loadSnapshot(@TempDir Path directory) throws Exception {
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L, directory, "1");
+
+		Model model;
+
+		try(InputStream is = openPMML()){
+			model = modelLoader.load(is, null);
+		}
+
+		String checksum = (String)model.getProperties().get(Model.PROPERTY_FILE_CHECKSUM);
+
+		ModelLoader.StreamSupplier failingSupplier = () -> {
+			throw new IOException();
+		};
+
+		Model snapshotModel = modelLoader.load(failingSupplier, null, checksum);
+
+		assertEquals(model.getSummary(), snapshotModel.getSummary());
+		assertEquals(checksum, snapshotModel.getProperties().get(Model.PROPERTY_FILE_CHECKSUM));
+
+		// A different configuration invalidates the snapshot
+		ModelLoader otherModelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L, directory, "2");
+
+		assertThrows(IOException.class, () -> otherModelLoader.load(failingSupplier, null, checksum));
+
+		otherModelLoader.load(ModelLoaderTest::openPMML, null, checksum);
+
+		assertThrows(IOException.class, () -> modelLoader.load(failingSupplier, null, checksum));
+	}
+
+	@Test
+	public void shareEvaluators() throws Exception {
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L, true, null, null);
+
+		Model model;
+		Model otherModel;
+
+		try(InputStream is = openPMML()){
+			model = modelLoader.load(is, null);
+		}
+
+		try(InputStream is = openPMML()){
+			otherModel = modelLoader.load(is, null);
+		}
+
+		assertNotSame(model, otherModel);
+		assertSame(model.getEvaluator(), otherModel.getEvaluator());
+		assertNotSame(model.getArgumentBinder(), otherModel.getArgumentBinder());
+
+		String checksum = (String)model.getProperties().get(Model.PROPERTY_FILE_CHECKSUM);
+
+		ModelLoader.StreamSupplier failingSupplier = () -> {
+			throw new IOException();
+		};
+
+		Model sharedModel = modelLoader.load(failingSupplier, null, checksum);
+
+		assertSame(model.getEvaluator(), sharedModel.getEvaluator());
+	}
+
+	@Test
+	public void spool() throws Exception {
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L);
+
+		// Spool every PMML document to a temporary file
+		ModelLoader spoolingModelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L, true, null, null, 0, 0L);
+
+		Model model;
+		Model spooledModel;
+
+		try(InputStream is = openPMML()){
+			model = modelLoader.load(is, null);
+		}
+
+		try(InputStream is = openPMML()){
+			spooledModel = spoolingModelLoader.load(is, null);
+		}
+
+		assertEquals(model.getSummary(), spooledModel.getSummary());
+		assertEquals(model.getProperties().get(Model.PROPERTY_FILE_SIZE), spooledModel.getProperties().get(Model.PROPERTY_FILE_SIZE));
+		assertEquals(model.getProperties().get(Model.PROPERTY_FILE_CHECKSUM), spooledModel.getProperties().get(Model.PROPERTY_FILE_CHECKSUM));
+	}
+
+	@Test
+	public void loadByteSource() throws Exception {
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L, true, null, null);
+
+		Model model;
+
+		try(InputStream is = openPMML()){
+			model = modelLoader.load(is, null);
+		}
+
+		ByteSource byteSource;
+
+		try(InputStream is = openPMML()){
+			byteSource = ByteSource.wrap(ByteStreams.toByteArray(is));
+		}
+
+		Model byteSourceModel = modelLoader.load(byteSource, null);
+
+		// The evaluator of an identical PMML document is shared
+		assertSame(model.getEvaluator(), byteSourceModel.getEvaluator());
+		assertEquals(model.getProperties().get(Model.PROPERTY_FILE_SIZE), byteSourceModel.getProperties().get(Model.PROPERTY_FILE_SIZE));
+		assertEquals(model.getProperties().get(Model.PROPERTY_FILE_CHECKSUM), byteSourceModel.getProperties().get(Model.PROPERTY_FILE_CHECKSUM));
+	}
+
+	@Test
+	public void limitUpload() throws Exception {
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L, true, null, null, ModelLoader.DEFAULT_SPOOL_THRESHOLD, 1024L);
+
+		try(InputStream is = modelLoader.limitUpload(openPMML())){
+			assertThrows(IOException.class, () -> modelLoader.load(is, null));
+
+			assertTrue(((LimitedInputStream)is).isExceeded());
+		}
+	}
+
+	static
+	private InputStream openPMML(){
+		return ModelLoaderTest.class.getResourceAsStream("/pmml/DecisionTreeIris.pmml");
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.InputStream;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ModelRegistryTest {
+
+	@Test
+	public void touch() throws Exception {
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L);
+
+		Model model;
+
+		try(InputStream is = open("DecisionTreeIris")){
+			model = modelLoader.load(is, null);
+		}
+
+		assertNull(model.getProperty(Model.PROPERTY_ACCESSED_TIMESTAMP));
+		assertEquals(0L, model.getProperty(Model.PROPERTY_ACCESSED_COUNT));
+
+		ModelRegistry modelRegistry = new ModelRegistry();
+
+		ModelRef modelRef = new ModelRef(() -> null, "DecisionTreeIris");
+
+		assertTrue(modelRegistry.put(modelRef, model));
+
+		modelRegistry.get(modelRef);
+		modelRegistry.get(modelRef, true);
+		modelRegistry.get(modelRef, true);
+
+		Map<String, Object> properties = model.getProperties();
+
+		assertTrue(properties.get(Model.PROPERTY_ACCESSED_TIMESTAMP) instanceof Date);
+		assertEquals(2L, properties.get(Model.PROPERTY_ACCESSED_COUNT));
+	}
+
+	@Test
+	public void trim() throws Exception {
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L);
+
+		AtomicInteger count = new AtomicInteger();
+
+		Model irisModel = loadModel(modelLoader, "DecisionTreeIris", count);
+		Model autoModel = loadModel(modelLoader, "LinearRegressionAuto", count);
+
+		long heapBudget = Math.max(getFileSize(irisModel), getFileSize(autoModel));
+
+		ModelRegistry modelRegistry = new ModelRegistry(true, heapBudget, Duration.ofMinutes(10), 0L);
+
+		Principal owner = () -> null;
+
+		ModelRef irisModelRef = new ModelRef(owner, "DecisionTreeIris");
+		ModelRef autoModelRef = new ModelRef(owner, "LinearRegressionAuto");
+
+		assertTrue(modelRegistry.put(irisModelRef, irisModel));
+		assertTrue(modelRegistry.put(autoModelRef, autoModel));
+
+		modelRegistry.get(irisModelRef, true);
+		modelRegistry.get(irisModelRef, true);
+
+		modelRegistry.trim(null);
+
+		assertTrue(irisModel.isMaterialized());
+		assertFalse(autoModel.isMaterialized());
+
+		assertEquals(0, count.get());
+
+		// Materializing the evicted model makes room for itself
+		assertSame(autoModel, modelRegistry.acquire(autoModelRef, true));
+
+		autoModel.release();
+
+		assertFalse(irisModel.isMaterialized());
+		assertTrue(autoModel.isMaterialized());
+
+		assertEquals(1, count.get());
+
+		assertNotNull(irisModel.getEvaluator());
+
+		assertEquals(2, count.get());
+	}
+
+	@Test
+	public void swap() throws Exception {
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L);
+
+		Model oldModel;
+		Model model;
+
+		try(InputStream is = open("DecisionTreeIris")){
+			oldModel = modelLoader.load(is, null);
+		}
+
+		try(InputStream is = open("DecisionTreeIris")){
+			model = modelLoader.load(is, null);
+		}
+
+		ModelRegistry modelRegistry = new ModelRegistry();
+
+		ModelRef modelRef = new ModelRef(() -> null, "DecisionTreeIris");
+
+		assertNull(modelRegistry.swap(modelRef, oldModel));
+
+		// An in-flight evaluation
+		assertSame(oldModel, modelRegistry.acquire(modelRef, true));
+
+		assertSame(oldModel, modelRegistry.swap(modelRef, model));
+
+		// The replaced model stays usable until the in-flight evaluation has finished
+		assertTrue(oldModel.isMaterialized());
+
+		oldModel.release();
+
+		assertFalse(oldModel.isMaterialized());
+		assertFalse(oldModel.acquire());
+
+		assertSame(model, modelRegistry.get(modelRef));
+		assertTrue((Long)model.getProperty(Model.PROPERTY_REVISION) > (Long)oldModel.getProperty(Model.PROPERTY_REVISION));
+	}
+
+	@Test
+	public void identifyOwners() throws Exception {
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L);
+
+		Model model;
+
+		try(InputStream is = open("DecisionTreeIris")){
+			model = modelLoader.load(is, null);
+		}
+
+		ModelRegistry modelRegistry = new ModelRegistry();
+
+		Principal restoringOwner = () -> "Alice";
+
+		assertTrue(modelRegistry.put(new ModelRef(restoringOwner, "DecisionTreeIris"), model));
+
+		// A different principal object with the same name
+		Principal requestingOwner = () -> "Alice";
+
+		assertSame(model, modelRegistry.get(new ModelRef(requestingOwner, "DecisionTreeIris")));
+		assertEquals(1, (modelRegistry.getModels(requestingOwner)).size());
+
+		assertNull(modelRegistry.get(new ModelRef(() -> "Bob", "DecisionTreeIris")));
+		assertNull(modelRegistry.get(new ModelRef(() -> null, "DecisionTreeIris")));
+	}
+
+	@Test
+	public void checkQuota() throws Exception {
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L);
+
+		AtomicInteger count = new AtomicInteger();
+
+		Model irisModel = loadModel(modelLoader, "DecisionTreeIris", count);
+		Model autoModel = loadModel(modelLoader, "LinearRegressionAuto", count);
+
+		long irisHeapSize = irisModel.estimateHeapSize();
+		long autoHeapSize = autoModel.estimateHeapSize();
+
+		assertTrue(irisHeapSize > getFileSize(irisModel) / 10);
+		assertEquals(irisHeapSize, irisModel.getProperty(Model.PROPERTY_HEAP_SIZE));
+
+		ModelRegistry modelRegistry = new ModelRegistry(false, 0L, Duration.ZERO, irisHeapSize + autoHeapSize - 1L);
+
+		Principal owner = () -> null;
+
+		ModelRef irisModelRef = new ModelRef(owner, "DecisionTreeIris");
+		ModelRef autoModelRef = new ModelRef(owner, "LinearRegressionAuto");
+
+		assertTrue(modelRegistry.checkQuota(irisModelRef, irisModel));
+		assertTrue(modelRegistry.put(irisModelRef, irisModel));
+
+		assertEquals(irisHeapSize, modelRegistry.getHeapSize(owner));
+
+		// The replacement of a model is not counted twice
+		assertTrue(modelRegistry.checkQuota(irisModelRef, irisModel));
+		assertFalse(modelRegistry.checkQuota(autoModelRef, autoModel));
+
+		assertTrue(modelRegistry.remove(irisModelRef, irisModel));
+
+		assertEquals(0L, modelRegistry.getHeapSize(owner));
+		assertTrue(modelRegistry.checkQuota(autoModelRef, autoModel));
+	}
+
+	@Test
+	public void checkSharedQuota() throws Exception {
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L, true, null, null);
+
+		AtomicInteger count = new AtomicInteger();
+
+		Model model = loadModel(modelLoader, "DecisionTreeIris", count);
+		Model otherModel = loadModel(modelLoader, "DecisionTreeIris", count);
+
+		assertSame(model.getEvaluator(), otherModel.getEvaluator());
+
+		long heapSize = model.estimateHeapSize();
+		long otherHeapSize = otherModel.estimateHeapSize();
+
+		// The shared evaluator is charged once
+		ModelRegistry modelRegistry = new ModelRegistry(false, 0L, Duration.ZERO, heapSize + otherHeapSize - 1L);
+
+		Principal owner = () -> null;
+
+		ModelRef modelRef = new ModelRef(owner, "DecisionTreeIris");
+		ModelRef otherModelRef = new ModelRef(owner, "DecisionTreeIris-copy");
+
+		assertTrue(modelRegistry.put(modelRef, model));
+
+		assertTrue(modelRegistry.checkQuota(otherModelRef, otherModel));
+		assertTrue(modelRegistry.put(otherModelRef, otherModel));
+
+		assertEquals(heapSize + otherHeapSize - otherModel.getEvaluatorHeapSize(), modelRegistry.getHeapSize(owner));
+	}
+
+	static
+	private Model loadModel(ModelLoader modelLoader, String name, AtomicInteger count) throws Exception {
+		Model model;
+
+		try(InputStream is = open(name)){
+			model = modelLoader.load(is, null);
+		}
+
+		model.setEvaluatorLoader(() -> {
+			count.incrementAndGet();
+
+			return modelLoader.loadEvaluator(() -> open(name), null, null);
+		});
+
+		return model;
+	}
+
+	static
+	private InputStream open(String name){
+		return ModelRegistryTest.class.getResourceAsStream("/pmml/" + name + ".pmml");
+	}
+
+	static
+	private long getFileSize(Model model){
+		Number size = (Number)(model.getProperties()).get(Model.PROPERTY_FILE_SIZE);
+
+		return size.longValue();
+	}
+}
@@ -23,13 +23,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.jakarta.rs.cbor.JacksonCBORProvider;
+import com.fasterxml.jackson.jakarta.rs.smile.JacksonSmileProvider;
 import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.WebTarget;
 import jakarta.ws.rs.core.Application;
 import jakarta.ws.rs.core.Form;
 import jakarta.ws.rs.core.HttpHeaders;
@@ -48,6 +56,9 @@ import org.junit.jupiter.api.Test;
 import org.openscoring.common.BatchEvaluationRequest;
 import org.openscoring.common.BatchEvaluationResponse;
 import org.openscoring.common.BatchModelResponse;
+import org.openscoring.common.ColumnarEvaluationRequest;
+import org.openscoring.common.ColumnarEvaluationResponse;
+import org.openscoring.common.DeploymentResponse;
 import org.openscoring.common.EvaluationRequest;
 import org.openscoring.common.EvaluationResponse;
 import org.openscoring.common.Field;
@@ -59,7 +70,9 @@ import org.openscoring.common.providers.ObjectMapperProvider;
 import org.openscoring.service.providers.CsvUtil;
 import org.supercsv.prefs.CsvPreference;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -85,6 +98,9 @@ public class ModelResourceTest extends JerseyTest {
 
 		// Ideally, should use the client-side ObjectMapperProvider class instead of the server-side one
 		clientConfig.register(ObjectMapperProvider.class);
+
+		clientConfig.register(new JacksonCBORProvider(ObjectMapperProvider.configure(new CBORMapper())));
+		clientConfig.register(new JacksonSmileProvider(ObjectMapperProvider.configure(new SmileMapper())));
 	}
 
 	@Test
@@ -149,13 +165,23 @@ public class ModelResourceTest extends JerseyTest {
 			}
 		}
 
+		String json = queryJson(id, null);
+		String indentedJson = queryJson(id, "true");
+
+		assertFalse(json.contains("\n"));
+		assertTrue(indentedJson.contains("\n"));
+
 		batchModelResponse = queryBatch(ModelResourceTest.ADMIN_TOKEN);
 
 		modelResponses = batchModelResponse.getResponses();
 
 		assertEquals(1, modelResponses.size());
 
-		download(id);
+		Response downloadResponse = download(id);
+
+		// The default model store does not keep PMML files, so the PMML document is re-created
+		assertNull(downloadResponse.getHeaderString(HttpHeaders.ETAG));
+		assertNull(downloadResponse.getHeaderString("Accept-Ranges"));
 
 		BatchEvaluationRequest batchRequest = loadRecords(id);
 
@@ -165,6 +191,13 @@ public class ModelResourceTest extends JerseyTest {
 
 		assertEquals(request.getId(), response.getId());
 
+		for(String mediaType : Arrays.asList(ModelResource.APPLICATION_CBOR, ModelResource.APPLICATION_SMILE)){
+			EvaluationResponse binaryResponse = evaluate(id, request, MediaType.valueOf(mediaType));
+
+			assertEquals(response.getId(), binaryResponse.getId());
+			assertEquals(response.getResults(), binaryResponse.getResults());
+		}
+
 		EvaluationRequest invalidRequest = invalidate(batchRequest.getRequest(50));
 
 		List<EvaluationRequest> requests = Arrays.asList(batchRequest.getRequest(0), invalidRequest, batchRequest.getRequest(100));
@@ -185,6 +218,37 @@ public class ModelResourceTest extends JerseyTest {
 		assertEquals(invalidRequest.getId(), invalidResponse.getId());
 		assertNotNull(invalidResponse.getMessage());
 
+		ColumnarEvaluationResponse columnarResponse = evaluateColumnar(id, ModelResource.toColumnarRequest(loadRecords(id).getRequests()));
+
+		assertEquals(150, (columnarResponse.getRowIds()).size());
+
+		Map<String, List<?>> resultColumns = columnarResponse.getColumns();
+
+		assertEquals(1 + 4, resultColumns.size());
+		assertEquals(response.getResults().get("Species"), (resultColumns.get("Species")).get(0));
+
+		List<EvaluationResponse> streamResponses = evaluateBatchStream(id, requests);
+
+		assertEquals(requests.size(), streamResponses.size());
+
+		for(int i = 0; i < requests.size(); i++){
+			assertEquals((requests.get(i)).getId(), (streamResponses.get(i)).getId());
+			assertEquals((responses.get(i)).getResults(), (streamResponses.get(i)).getResults());
+		}
+
+		assertNotNull((streamResponses.get(1)).getMessage());
+
+		String csv = evaluateCsv(id).readEntity(String.class);
+		String streamCsv = evaluateCsvStream(id, 200).readEntity(String.class);
+
+		assertEquals(csv, streamCsv);
+
+		String metrics = queryMetrics();
+
+		assertTrue(metrics.contains("openscoring_request_seconds_count{family=\"EVALUATION\",model=\"DecisionTreeIris\"}"));
+		assertTrue(metrics.contains("openscoring_phase_seconds_count{family=\"EVALUATION\",model=\"DecisionTreeIris\",phase=\"evaluate\"}"));
+		assertTrue(metrics.contains("openscoring_batch_size_bucket{model=\"DecisionTreeIris\",le=\"+Inf\"}"));
+
 		undeploy(id);
 	}
 
@@ -231,6 +295,9 @@ public class ModelResourceTest extends JerseyTest {
 
 		evaluateCsvForm(id);
 
+		// Aggregation is not supported in streaming mode
+		evaluateCsvStream(id, 400);
+
 		undeployForm(id);
 	}
 
@@ -301,9 +368,42 @@ public class ModelResourceTest extends JerseyTest {
 
 		assertTrue(report.startsWith("<math xmlns=\"http://www.w3.org/1998/Math/MathML\">") && report.endsWith("</math>"));
 
+		DeploymentResponse deploymentResponse = deployAsync(id);
+
+		for(int i = 0; i < 100; i++){
+			DeploymentResponse.Status status = deploymentResponse.getStatus();
+
+			if((DeploymentResponse.Status.SUCCEEDED).equals(status) || (DeploymentResponse.Status.FAILED).equals(status)){
+				break;
+			}
+
+			Thread.sleep(50);
+
+			deploymentResponse = queryDeployment(id);
+		}
+
+		assertEquals(DeploymentResponse.Status.SUCCEEDED, deploymentResponse.getStatus());
+
 		undeploy(id);
 	}
 
+	@Test
+	public void parseRange(){
+		assertArrayEquals(new long[]{0, 99}, ModelResource.parseRange("bytes=0-99", 1000));
+		assertArrayEquals(new long[]{900, 999}, ModelResource.parseRange("bytes=900-", 1000));
+		assertArrayEquals(new long[]{900, 999}, ModelResource.parseRange("bytes=900-2000", 1000));
+		assertArrayEquals(new long[]{500, 999}, ModelResource.parseRange("bytes=-500", 1000));
+		assertArrayEquals(new long[]{0, 999}, ModelResource.parseRange("bytes=-2000", 1000));
+
+		assertArrayEquals(new long[0], ModelResource.parseRange("bytes=1000-", 1000));
+		assertArrayEquals(new long[0], ModelResource.parseRange("bytes=-0", 1000));
+
+		assertNull(ModelResource.parseRange("bytes=0-99,200-299", 1000));
+		assertNull(ModelResource.parseRange("bytes=99-0", 1000));
+		assertNull(ModelResource.parseRange("bytes=x-y", 1000));
+		assertNull(ModelResource.parseRange("lines=0-99", 1000));
+	}
+
 	private ModelResponse deploy(String id) throws IOException {
 		Response response;
 
@@ -322,6 +422,39 @@ public class ModelResourceTest extends JerseyTest {
 		return response.readEntity(ModelResponse.class);
 	}
 
+	private DeploymentResponse deployAsync(String id) throws IOException {
+		Response response;
+
+		try(InputStream is = openPMML(id)){
+			Entity<InputStream> entity = Entity.entity(is, MediaType.APPLICATION_XML);
+
+			response = target("model/" + id)
+				.queryParam("async", true)
+				.request(MediaType.APPLICATION_JSON)
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + ModelResourceTest.ADMIN_TOKEN)
+				.put(entity);
+		}
+
+		assertEquals(202, response.getStatus());
+
+		URI location = response.getLocation();
+
+		assertEquals("/model/" + id + "/deployment", location.getPath());
+
+		return response.readEntity(DeploymentResponse.class);
+	}
+
+	private DeploymentResponse queryDeployment(String id){
+		Response response = target("model/" + id + "/deployment")
+			.request(MediaType.APPLICATION_JSON)
+			.header(HttpHeaders.AUTHORIZATION, "Bearer " + ModelResourceTest.ADMIN_TOKEN)
+			.get();
+
+		assertEquals(200, response.getStatus());
+
+		return response.readEntity(DeploymentResponse.class);
+	}
+
 	private ModelResponse deployBadString(String id, String string){
 		Entity<String> entity = Entity.entity(string, MediaType.APPLICATION_XML);
 
@@ -386,6 +519,23 @@ public class ModelResourceTest extends JerseyTest {
 		return response.readEntity(ModelResponse.class);
 	}
 
+	private String queryJson(String id, String indent){
+		WebTarget target = target("model/" + id);
+
+		if(indent != null){
+			target = target.queryParam("indent", indent);
+		}
+
+		Response response = target
+			.request(MediaType.APPLICATION_JSON)
+			.header(HttpHeaders.AUTHORIZATION, "Bearer " + ModelResourceTest.USER_TOKEN)
+			.get();
+
+		assertEquals(200, response.getStatus());
+
+		return response.readEntity(String.class);
+	}
+
 	private Response download(String id){
 		Response response = target("model/" + id + "/pmml")
 			.request(MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML)
@@ -399,14 +549,19 @@ public class ModelResourceTest extends JerseyTest {
 	}
 
 	private EvaluationResponse evaluate(String id, EvaluationRequest request){
-		Entity<EvaluationRequest> entity = Entity.json(request);
+		return evaluate(id, request, MediaType.APPLICATION_JSON_TYPE);
+	}
+
+	private EvaluationResponse evaluate(String id, EvaluationRequest request, MediaType mediaType){
+		Entity<EvaluationRequest> entity = Entity.entity(request, mediaType);
 
 		Response response = target("model/" + id)
-			.request(MediaType.APPLICATION_JSON)
+			.request(mediaType)
 			.header(HttpHeaders.AUTHORIZATION, "Bearer " + ModelResourceTest.USER_TOKEN)
 			.post(entity);
 
 		assertEquals(200, response.getStatus());
+		assertEquals(mediaType, response.getMediaType());
 
 		return response.readEntity(EvaluationResponse.class);
 	}
@@ -424,6 +579,55 @@ public class ModelResourceTest extends JerseyTest {
 		return response.readEntity(BatchEvaluationResponse.class);
 	}
 
+	private List<EvaluationResponse> evaluateBatchStream(String id, List<EvaluationRequest> requests) throws IOException {
+		ObjectMapperProvider objectMapperProvider = new ObjectMapperProvider();
+
+		ObjectWriter requestWriter = objectMapperProvider.getWriter(EvaluationRequest.class);
+		ObjectReader responseReader = objectMapperProvider.getReader(EvaluationResponse.class);
+
+		StringBuilder sb = new StringBuilder();
+
+		for(EvaluationRequest request : requests){
+			sb.append(requestWriter.writeValueAsString(request)).append('\n');
+		}
+
+		Entity<String> entity = Entity.entity(sb.toString(), ModelResource.APPLICATION_NDJSON);
+
+		Response response = target("model/" + id + "/batch")
+			.request(ModelResource.APPLICATION_NDJSON)
+			.header(HttpHeaders.AUTHORIZATION, "Bearer " + ModelResourceTest.USER_TOKEN)
+			.post(entity);
+
+		assertEquals(200, response.getStatus());
+		assertEquals(MediaType.valueOf(ModelResource.APPLICATION_NDJSON), response.getMediaType());
+
+		String ndjson = response.readEntity(String.class);
+
+		assertTrue(ndjson.endsWith("\n"));
+
+		List<EvaluationResponse> result = new ArrayList<>();
+
+		String[] lines = ndjson.split("\n");
+		for(String line : lines){
+			result.add(responseReader.readValue(line));
+		}
+
+		return result;
+	}
+
+	private ColumnarEvaluationResponse evaluateColumnar(String id, ColumnarEvaluationRequest columnarRequest){
+		Entity<ColumnarEvaluationRequest> entity = Entity.json(columnarRequest);
+
+		Response response = target("model/" + id + "/columnar")
+			.request(MediaType.APPLICATION_JSON)
+			.header(HttpHeaders.AUTHORIZATION, "Bearer " + ModelResourceTest.USER_TOKEN)
+			.post(entity);
+
+		assertEquals(200, response.getStatus());
+
+		return response.readEntity(ColumnarEvaluationResponse.class);
+	}
+
 	private Response evaluateCsv(String id) throws IOException {
 		Response response;
 
@@ -444,6 +648,29 @@ public class ModelResourceTest extends JerseyTest {
 		return response;
 	}
 
+	private Response evaluateCsvStream(String id, int status) throws IOException {
+		Response response;
+
+		try(InputStream is = openCSV(id)){
+			Entity<InputStream> entity = Entity.entity(is, MediaType.TEXT_PLAIN_TYPE.withCharset(CHARSET_ISO_8859_1));
+
+			response = target("model/" + id + "/csv/stream")
+				.queryParam("delimiterChar", "\\t")
+				.queryParam("quoteChar", "\\\"")
+				.request(MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN)
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + ModelResourceTest.USER_TOKEN)
+				.post(entity);
+		}
+
+		assertEquals(status, response.getStatus());
+
+		if(status == 200){
+			assertEquals(MediaType.TEXT_PLAIN_TYPE.withCharset(CHARSET_ISO_8859_1), response.getMediaType());
+		}
+
+		return response;
+	}
+
 	private Response evaluateCsvForm(String id) throws IOException {
 		Response response;
 
@@ -467,6 +694,17 @@ public class ModelResourceTest extends JerseyTest {
 		return response;
 	}
 
+	private String queryMetrics(){
+		Response response = target("metrics")
+			.request(MediaType.TEXT_PLAIN)
+			.header(HttpHeaders.AUTHORIZATION, "Bearer " + ModelResourceTest.ADMIN_TOKEN)
+			.get();
+
+		assertEquals(200, response.getStatus());
+
+		return response.readEntity(String.class);
+	}
+
 	private SimpleResponse undeploy(String id){
 		Response response = target("model/" + id)
 			.request(MediaType.APPLICATION_JSON)
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ModelRouterTest {
+
+	@Test
+	public void select(){
+		Map<String, Double> weights = new LinkedHashMap<>();
+		weights.put("Test", 3d);
+		weights.put("Test.v2", 1d);
+		weights.put("Test.v3", 0d);
+
+		ModelRouter.Route route = new ModelRouter.Route(weights, null, 0d);
+
+		assertEquals("Test", route.select(0d));
+		assertEquals("Test", route.select(0.74d));
+		assertEquals("Test.v2", route.select(0.75d));
+		assertEquals("Test.v2", route.select(0.99d));
+
+		assertTrue(route.contains("Test.v3"));
+		assertFalse(route.contains("Test.v4"));
+
+		assertEquals(weights, route.getWeights());
+
+		assertThrows(IllegalArgumentException.class, () -> new ModelRouter.Route(Collections.emptyMap(), null, 0d));
+		assertThrows(IllegalArgumentException.class, () -> new ModelRouter.Route(Collections.singletonMap("Test", 0d), null, 0d));
+		assertThrows(IllegalArgumentException.class, () -> new ModelRouter.Route(Collections.singletonMap("Test", -1d), null, 0d));
+		assertThrows(IllegalArgumentException.class, () -> new ModelRouter.Route(Collections.singletonMap("Test", 1d), "Test/v2", 0.5d));
+		assertThrows(IllegalArgumentException.class, () -> new ModelRouter.Route(Collections.singletonMap("Test", 1d), "Test.v2", 1.5d));
+	}
+
+	@Test
+	public void resolve(){
+		ModelRouter modelRouter = new ModelRouter(new ModelRegistry(), 1, 10);
+
+		Principal owner = () -> null;
+
+		ModelRef modelRef = new ModelRef(owner, "Test");
+
+		assertSame(modelRef, modelRouter.resolve(modelRef, null));
+		assertSame(modelRef, modelRouter.resolve(modelRef, "Test.v2"));
+
+		Map<String, Double> weights = new LinkedHashMap<>();
+		weights.put("Test", 0d);
+		weights.put("Test.v2", 1d);
+
+		modelRouter.putRoute(modelRef, new ModelRouter.Route(weights, null, 0d));
+
+		assertEquals(new ModelRef(owner, "Test.v2"), modelRouter.resolve(modelRef, null));
+		assertSame(modelRef, modelRouter.resolve(modelRef, "Test"));
+		assertNull(modelRouter.resolve(modelRef, "Test.v3"));
+
+		modelRouter.removeRoute(modelRef);
+
+		assertSame(modelRef, modelRouter.resolve(modelRef, null));
+
+		modelRouter.shutdown();
+	}
+}
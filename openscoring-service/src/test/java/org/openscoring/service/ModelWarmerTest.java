@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import org.junit.jupiter.api.Test;
+import org.openscoring.common.Field;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ModelWarmerTest {
+
+	@Test
+	public void warmUp() throws Exception {
+		ModelLoader modelLoader = new ModelLoader(new LoadingModelEvaluatorBuilder(), 0L);
+
+		Model model;
+
+		try(InputStream is = ModelWarmerTest.class.getResourceAsStream("/pmml/DecisionTreeIris.pmml")){
+			model = modelLoader.load(is, null);
+		}
+
+		List<Field> inputFields = (model.getSchema()).get("inputFields");
+
+		Random random = new Random(0L);
+
+		for(int i = 0; i < 100; i++){
+			Map<String, Object> arguments = ModelWarmer.createArguments(inputFields, random);
+
+			assertEquals(inputFields.size(), arguments.size());
+
+			Double sepalLength = (Double)arguments.get("Sepal_Length");
+
+			if(sepalLength != null){
+				assertTrue(sepalLength >= 4.3d && sepalLength <= 7.9d);
+			}
+		}
+
+		ModelWarmer modelWarmer = new ModelWarmer(0, Duration.ofSeconds(10));
+
+		assertEquals(0, modelWarmer.warmUp(model));
+
+		modelWarmer = new ModelWarmer(100, Duration.ofSeconds(10));
+
+		assertEquals(100, modelWarmer.warmUp(model));
+	}
+}
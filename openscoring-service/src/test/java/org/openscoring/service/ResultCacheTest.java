@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.cache.CacheStats;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import org.junit.jupiter.api.Test;
+import org.openscoring.common.EvaluationRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResultCacheTest {
+
+	@Test
+	public void isEnabled(){
+		ResultCache resultCache = new ResultCache(0L, Duration.ofMinutes(1), true, Collections.emptyMap());
+
+		assertFalse(resultCache.isEnabled("Test"));
+
+		resultCache = new ResultCache(1024L * 1024L, Duration.ofMinutes(1), true, Collections.singletonMap("com.mycompany.Test", false));
+
+		assertTrue(resultCache.isEnabled("Test"));
+		assertFalse(resultCache.isEnabled("com.mycompany.Test"));
+	}
+
+	@Test
+	public void get() throws Exception {
+		Evaluator evaluator;
+
+		try(InputStream is = ResultCacheTest.class.getResourceAsStream("/pmml/DecisionTreeIris.pmml")){
+			evaluator = new LoadingModelEvaluatorBuilder()
+				.load(is)
+				.build();
+		}
+
+		Model model = new Model(evaluator);
+
+		ResultCache resultCache = new ResultCache(1024L * 1024L, Duration.ofMinutes(1), true, Collections.emptyMap());
+
+		Map<String, Object> requestArguments = new LinkedHashMap<>();
+		requestArguments.put("Sepal_Length", 5.1d);
+		requestArguments.put("Sepal_Width", 3.5d);
+		requestArguments.put("Petal_Length", 1.4d);
+		requestArguments.put("Petal_Width", 0.2d);
+
+		EvaluationRequest request = new EvaluationRequest("1")
+			.setArguments(requestArguments);
+
+		AtomicInteger count = new AtomicInteger();
+
+		ArgumentBinder.ArgumentMap uncachedArguments = model.getArgumentBinder().bind(request);
+
+		// Models without a checksum are not cached
+		resultCache.get(model, uncachedArguments.getValues(), () -> {
+			count.incrementAndGet();
+
+			return ModelResource.evaluate(model, uncachedArguments);
+		});
+
+		assertEquals(1, count.get());
+		assertNull(resultCache.getStats(model));
+
+		model.putProperty(Model.PROPERTY_FILE_CHECKSUM, "0123456789abcdef");
+
+		Map<String, ?> results = null;
+
+		for(int i = 0; i < 3; i++){
+			ArgumentBinder.ArgumentMap arguments = model.getArgumentBinder().bind(request);
+
+			Map<String, ?> cachedResults = resultCache.get(model, arguments.getValues(), () -> {
+				count.incrementAndGet();
+
+				return ModelResource.evaluate(model, arguments);
+			});
+
+			if(results != null){
+				assertEquals(results, cachedResults);
+				assertNotSame(results, cachedResults);
+			}
+
+			results = cachedResults;
+		}
+
+		assertEquals(2, count.get());
+
+		CacheStats resultCacheStats = resultCache.getStats(model);
+
+		assertEquals(2L, resultCacheStats.hitCount());
+		assertEquals(1L, resultCacheStats.missCount());
+
+		resultCache.removeStats("0123456789abcdef", null);
+
+		assertNull(resultCache.getStats(model));
+	}
+
+	@Test
+	public void getModelName() throws Exception {
+		Evaluator evaluator;
+
+		try(InputStream is = ResultCacheTest.class.getResourceAsStream("/pmml/DecisionTreeIris.pmml")){
+			evaluator = new LoadingModelEvaluatorBuilder()
+				.load(is)
+				.build();
+		}
+
+		// Two deployments of the same PMML document, which select different model elements
+		Model defaultModel = new Model(evaluator);
+		defaultModel.putProperty(Model.PROPERTY_FILE_CHECKSUM, "0123456789abcdef");
+
+		Model namedModel = new Model(evaluator);
+		namedModel.setModelName("RPart_Model");
+		namedModel.putProperty(Model.PROPERTY_FILE_CHECKSUM, "0123456789abcdef");
+
+		ResultCache resultCache = new ResultCache(1024L * 1024L, Duration.ofMinutes(1), true, Collections.emptyMap());
+
+		Map<String, Object> requestArguments = new LinkedHashMap<>();
+		requestArguments.put("Sepal_Length", 5.1d);
+		requestArguments.put("Sepal_Width", 3.5d);
+		requestArguments.put("Petal_Length", 1.4d);
+		requestArguments.put("Petal_Width", 0.2d);
+
+		EvaluationRequest request = new EvaluationRequest("1")
+			.setArguments(requestArguments);
+
+		ArgumentBinder.ArgumentMap arguments = defaultModel.getArgumentBinder().bind(request);
+
+		Map<String, ?> defaultResults = resultCache.get(defaultModel, arguments.getValues(), () -> Collections.singletonMap("y", "default"));
+		Map<String, ?> namedResults = resultCache.get(namedModel, arguments.getValues(), () -> Collections.singletonMap("y", "named"));
+
+		assertEquals(Collections.singletonMap("y", "default"), defaultResults);
+		assertEquals(Collections.singletonMap("y", "named"), namedResults);
+
+		assertEquals(1L, (resultCache.getStats(defaultModel)).missCount());
+		assertEquals(1L, (resultCache.getStats(namedModel)).missCount());
+
+		resultCache.removeStats("0123456789abcdef", "RPart_Model");
+
+		assertNotNull(resultCache.getStats(defaultModel));
+		assertNull(resultCache.getStats(namedModel));
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2019 Villu Ruusmann
+ *
+ * This file is part of Openscoring
+ *
+ * Openscoring is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Openscoring is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Openscoring.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openscoring.service.visitors;
+
+import java.io.InputStream;
+
+import org.dmg.pmml.Model;
+import org.dmg.pmml.PMML;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.HasPMML;
+import org.jpmml.evaluator.LoadingModelEvaluatorBuilder;
+import org.jpmml.evaluator.visitors.ModelEvaluatorVisitorBattery;
+import org.jpmml.model.visitors.VisitorBattery;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PMMLObjectInternerTest {
+
+	@Test
+	public void intern() throws Exception {
+		VisitorBattery visitors = new VisitorBattery();
+		visitors.addAll(new ModelEvaluatorVisitorBattery(false));
+		visitors.add(PMMLObjectInterner.class);
+
+		LoadingModelEvaluatorBuilder modelEvaluatorBuilder = new LoadingModelEvaluatorBuilder();
+		modelEvaluatorBuilder.setVisitors(visitors);
+
+		PMML pmml = load(modelEvaluatorBuilder);
+		PMML otherPmml = load(modelEvaluatorBuilder);
+
+		assertNotSame(pmml, otherPmml);
+		assertSame(pmml.getDataDictionary(), otherPmml.getDataDictionary());
+
+		Model model = (pmml.getModels()).get(0);
+		Model otherModel = (otherPmml.getModels()).get(0);
+
+		assertNotSame(model, otherModel);
+		assertSame(model.getMiningSchema(), otherModel.getMiningSchema());
+		assertSame(model.getOutput(), otherModel.getOutput());
+
+		PMMLObjectInterner.Savings savings = PMMLObjectInterner.getSavings(otherPmml);
+
+		assertTrue(savings.getCount() > 0);
+		assertTrue(savings.getSize() > 0L);
+	}
+
+	static
+	private PMML load(LoadingModelEvaluatorBuilder modelEvaluatorBuilder) throws Exception {
+
+		try(InputStream is = PMMLObjectInternerTest.class.getResourceAsStream("/pmml/DecisionTreeIris.pmml")){
+			Evaluator evaluator = modelEvaluatorBuilder.clone()
+				.load(is)
+				.build();
+
+			HasPMML hasPMML = (HasPMML)evaluator;
+
+			return hasPMML.getPMML();
+		}
+	}
+}